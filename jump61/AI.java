@@ -1,13 +1,18 @@
 package jump61;
 
-import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static jump61.TranspositionTable.*;
 
 /** An automated Player.
  *  @author Dasheng Chen
  */
 class AI extends Player {
 
-    /** Time allotted to all but final search depth (milliseconds). */
+    /** Time allotted to a move when no time budget has been set
+     *  (milliseconds). */
     private static final long TIME_LIMIT = 15000;
 
     /** Deepth for explore GameTree, with board size less than 7. */
@@ -19,11 +24,61 @@ class AI extends Player {
     /** Deepth for explore GameTree, with board size greater or equal to 8. */
     private int depth3 = 3;
 
+    /** Depths for exploring the GameTree on boards larger than 10 x 10:
+     *  LARGE_DEPTHS[k] is used for sizes up to LARGE_SIZES[k]; larger
+     *  boards only evaluate the next move. */
+    private static final int[] LARGE_DEPTHS = { 2, 1 };
+
+    /** Board-size limits for LARGE_DEPTHS. */
+    private static final int[] LARGE_SIZES = { 20, 64 };
+
     /** Best Move. */
     private int bestMove = -1;
 
-    /** Time to start make move. */
-    private long startTime;
+    /** A time limit longer than any search (milliseconds). */
+    private static final long NO_LIMIT = Long.MAX_VALUE / 2;
+
+    /** Time by which the current search must stop (milliseconds). */
+    private long _deadline;
+
+    /** Statistics of the current search, as of the end of the last
+     *  root move searched. */
+    private final SearchStats _stats = new SearchStats();
+
+    /** Statistics of the search for my last move, or null if I have
+     *  not moved. */
+    private SearchStats _moveStats;
+
+    /** Set when the current search is to be abandoned.  Searches check
+     *  it cooperatively and unwind without using their partial results. */
+    private volatile boolean _stopped;
+
+    /** Value to the winner of a game that is over at the root of a
+     *  search.  Wins found further from the root are worth one less per
+     *  ply, so that quicker wins are preferred. */
+    static final int WINNING_VALUE = 1000000;
+
+    /** A value greater than that of any position. */
+    static final int INFINITY = WINNING_VALUE + 1;
+
+    /** Bound on the depth of any search, in plies. */
+    static final int MAX_PLY = 1000;
+
+    /** The transposition table used by the current search. */
+    private TranspositionTable _table;
+
+    /** Thread searching while my opponent considers a move, or null if
+     *  I am not pondering. */
+    private Thread _ponderer;
+
+    /** True iff searches order moves heuristically. */
+    private boolean _ordering = true;
+
+    /** Tactical scores (see SearchWorker.tacticalScore) in the order in
+     *  which moves having them are searched at the root. */
+    private static final int[] ROOT_SCORES = {
+        SearchWorker.CAPTURE_SCORE, SearchWorker.CASCADE_SCORE, 0
+    };
 
     /** A new player of GAME initially playing COLOR that chooses
      *  moves automatically.
@@ -36,173 +91,393 @@ class AI extends Player {
     void makeMove() {
         Side player = this.getSide();
         Board b = this.getBoard();
-        double cutoff = Double.MAX_VALUE;
-        ArrayList<Integer> moves = validMoves(player, b);
-        startTime = System.currentTimeMillis();
-        try {
-            if (b.size() > 8) {
-                getGame().message("depth is 3");
-                depth = depth3;
-            } else {
-                depth = depth4;
-            }
-            findBestMove(player, b, depth, cutoff, moves);
-        } catch (GameException e) {
-            int rand = getGame().randInt(moves.size());
-            getGame().message("AI Time Out");
-            bestMove = moves.get(rand);
-        }
-        int r = b.row(bestMove);
-        int c = b.col(bestMove);
+        _table = getGame().getTable();
+        setDepth(b);
+        if (b.size() > 8) {
+            getGame().message("depth is %d", depth);
+        }
+        long budget = getGame().getMoveTime();
+        Tablebase tablebase = getGame().getTablebase(b.size());
+        int move = -1;
+        if (tablebase != null) {
+            move = tablebase.bestMove(new MutableBoard(b));
+        }
+        if (move != -1) {
+            _stats.clear();
+        } else if (budget > 0) {
+            startClock(timeLimit(budget));
+            move = searchIteratively(player, b, MAX_PLY);
+        } else {
+            startClock(timeLimit(TIME_LIMIT));
+            move = searchIteratively(player, b, depth + 1);
+        }
+        _moveStats = new SearchStats(_stats);
+        int r = b.row(move);
+        int c = b.col(move);
         getGame().message("%s moves %d %d.\n", getSide().toCapitalizedString(),
             r, c);
+        getGame().reportStats(getSide(), _moveStats);
         getGame().makeMove(r, c);
     }
 
-    /** Return the minimum of CUTOFF and the minmax value of board B
-     *  (which must be mutable) for player P to a search depth of D
-     *  (where D == 0 denotes statically evaluating just the next move).
-     *  If MOVES is not null and CUTOFF is not exceeded, set MOVES to
-     *  a list of all highest-scoring moves for P; clear it if
-     *  non-null and CUTOFF is exceeded. the contents of B are
-     *  invariant over this call.
-     *  @param player a player
-     *  @param b current board
-     *  @param d depth
-     *  @param cutoff cutoff value
-     *  @param moves available moves
-     *  @return return a static evaluation
-     */
-    private double findBestMove(Side player, Board b, int d, double cutoff,
-        ArrayList<Integer> moves) {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - startTime > TIME_LIMIT) {
-            throw GameException.timeOutAI();
-        }
-        boolean isMaximizer;
-        if (player == getSide()) {
-            isMaximizer = true;
-        } else {
-            isMaximizer = false;
+    @Override
+    SearchStats searchStats() {
+        return _moveStats;
+    }
+
+    /** Search, in a separate thread, the positions that my opponent's
+     *  possible moves on the current position would leave me, until
+     *  stopped (see ponder). */
+    @Override
+    void startPondering() {
+        final Board b = new MutableBoard(getBoard());
+        if (b.getWinner() != null) {
+            return;
         }
-        if (moves == null) {
-            if (isMaximizer) {
-                return Double.MIN_VALUE;
-            } else {
-                return Double.MAX_VALUE;
+        _table = getGame().getTable();
+        setDepth(b);
+        startClock(NO_LIMIT);
+        _ponderer = new Thread() {
+            @Override
+            public void run() {
+                ponder(b);
             }
+        };
+        _ponderer.setDaemon(true);
+        _ponderer.start();
+    }
+
+    @Override
+    void stopPondering() {
+        if (_ponderer == null) {
+            return;
         }
-        if (d == this.depth) {
-            bestMove = moves.get(0);
+        stop();
+        boolean interrupted = false;
+        while (_ponderer.isAlive()) {
+            try {
+                _ponderer.join();
+            } catch (InterruptedException excp) {
+                interrupted = true;
+            }
         }
-        if (d == 0) {
-            return guessBestMove(player, b, cutoff, moves, isMaximizer);
+        _ponderer = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
         }
-        Board copyOfBoard = new MutableBoard(b);
-        double currentBestValue;
-        if (isMaximizer) {
-            currentBestValue = Double.MIN_VALUE;
-        } else {
-            currentBestValue = Double.MAX_VALUE;
-        }
-        for (Integer m : moves) {
-            copyOfBoard.addSpot(player, m);
-            ArrayList<Integer> nextMoves = validMoves(player.opposite(),
-                copyOfBoard);
-            double newMoveValue = findBestMove(player.opposite(), copyOfBoard,
-                d - 1, currentBestValue, nextMoves);
-            copyOfBoard.undo();
-            if (isMaximizer) {
-                if (newMoveValue > currentBestValue) {
-                    currentBestValue = newMoveValue;
-                    if (d == this.depth) {
-                        bestMove = m;
-                    }
-                    if (currentBestValue >= cutoff) {
-                        break;
-                    }
-                }
-            } else {
-                if (newMoveValue < currentBestValue) {
-                    currentBestValue = newMoveValue;
-                    if (currentBestValue <= cutoff) {
-                        break;
-                    }
-                }
+    }
+
+    /** Return true iff I am pondering and my search has not yet ended
+     *  of its own accord. */
+    boolean pondering() {
+        return _ponderer != null && _ponderer.isAlive();
+    }
+
+    /** Search the replies to my opponent's moves on board B (on which my
+     *  opponent is to move), most likely moves first, until stopped or
+     *  all are done.  Each reply is searched as makeMove would search it
+     *  with no time budget, so that the transposition table holds the
+     *  positions (and their best moves, and thus the principal
+     *  variation) that the search for my actual reply will visit, at
+     *  the same depths.  The likeliest move is the one that a search to
+     *  my own depth finds for my opponent; the rest follow in the order
+     *  in which my root searches try them. */
+    private void ponder(Board b) {
+        Side opponent = getSide().opposite();
+        int predicted = searchIteratively(opponent, b, depth);
+        int[] replies = new int[b.size() * b.size()];
+        int numReplies = SearchWorker.generateMoves(opponent, b, replies);
+        System.arraycopy(_rootMoves, 0, replies, 0, numReplies);
+        SearchWorker.moveToFront(predicted, replies, numReplies);
+        MutableBoard board = new MutableBoard(b);
+        for (int k = 0; k < numReplies && !_stopped; k += 1) {
+            board.addSpot(opponent, replies[k]);
+            if (board.getWinner() == null) {
+                searchIteratively(getSide(), board, depth + 1);
             }
+            board.undo();
         }
-        return currentBestValue;
-    }
-
-    /** Guess best move for player p.
-     *  @param player player
-     *  @param b current board
-     *  @param cutoff cutoff value
-     *  @param moves available moves
-     *  @param isMaximizer check if current level is maximizer
-     *  @return a best board static value. */
-    private double guessBestMove(Side player, Board b, double cutoff,
-        ArrayList<Integer> moves, boolean isMaximizer) {
-        Board copyOfBoard = new MutableBoard(b);
-        double currentBestValue;
-        if (isMaximizer) {
-            currentBestValue = Double.MIN_VALUE;
+    }
+
+    /** Set depth to the search depth for board B. */
+    private void setDepth(Board b) {
+        if (b.size() > 8) {
+            depth = depthFor(b.size());
         } else {
-            currentBestValue = Double.MAX_VALUE;
-        }
-        for (Integer m : moves) {
-            copyOfBoard.addSpot(player, m);
-            double newBestValue = staticEval(player, copyOfBoard);
-            copyOfBoard.undo();
-            if (isMaximizer) {
-                if (newBestValue > currentBestValue) {
-                    currentBestValue = newBestValue;
-                    if (currentBestValue >= cutoff) {
-                        break;
-                    }
-                }
-            } else {
-                if (newBestValue < currentBestValue) {
-                    currentBestValue = newBestValue;
-                    if (currentBestValue <= cutoff) {
-                        break;
-                    }
+            depth = depth4;
+        }
+    }
+
+    /** Return LIMIT (milliseconds), or the time slice of my current move,
+     *  if any, if that is shorter. */
+    private long timeLimit(long limit) {
+        long slice = getGame().getTimeSlice();
+        return slice > 0 ? Math.min(limit, slice) : limit;
+    }
+
+    /** Start the clock for a search that may take LIMIT milliseconds. */
+    private void startClock(long limit) {
+        _deadline = System.currentTimeMillis() + limit;
+        _stopped = false;
+    }
+
+    /** Return the best move for PLAYER on board B, found by iterative
+     *  deepening: searching to depths of 1, 2, ... plies, up to MAXPLIES,
+     *  until the clock (see startClock) runs out, the search is stopped,
+     *  or the outcome of the game is known.  Each iteration searches the
+     *  best move of the one before first.  Returns the best move of the
+     *  last completed iteration (or, if none completed, the best found
+     *  so far).  Gathers statistics on the search in _stats. */
+    private int searchIteratively(Side player, Board b, int maxPlies) {
+        long start = System.nanoTime();
+        _stats.clear();
+        _rootMoves = new int[b.size() * b.size()];
+        SearchWorker.generateMoves(player, b, _rootMoves);
+        bestMove = _rootMoves[0];
+        int move = -1;
+        for (int d = 1; d <= maxPlies; d += 1) {
+            long iterationStart = System.nanoTime();
+            int value = searchRoot(player, b, d);
+            if (_stopped) {
+                break;
+            }
+            _stats.endIteration(d, System.nanoTime() - iterationStart);
+            move = bestMove;
+            if (Math.abs(value) > WINNING_VALUE - MAX_PLY) {
+                break;
+            }
+        }
+        if (move == -1) {
+            move = bestMove;
+        }
+        _stats.setElapsed(System.nanoTime() - start);
+        return move;
+    }
+
+    /** Ask any search in progress to stop as soon as possible. */
+    void stop() {
+        _stopped = true;
+    }
+
+    /** Return the search depth to use on a board larger than 8 x 8
+     *  with SIZE squares on a side. */
+    private int depthFor(int size) {
+        if (size <= 10) {
+            return depth3;
+        }
+        for (int k = 0; k < LARGE_SIZES.length; k += 1) {
+            if (size <= LARGE_SIZES[k]) {
+                return LARGE_DEPTHS[k];
+            }
+        }
+        return 0;
+    }
+
+    /** Return the value for PLAYER, who is to move, of board B,
+     *  searching D (> 0) plies deep, and set bestMove to the best move
+     *  found.  Searches bestMove first.  Moves after the first are
+     *  searched by the pool of this session's Game, if it has one, and
+     *  otherwise in order by this thread.  Either way, bestMove becomes
+     *  the first of the root moves, in the order searched serially,
+     *  having the greatest value.  If the search is stopped, returns a
+     *  meaningless value, and bestMove is the best among the moves whose
+     *  searches completed, if any. */
+    private int searchRoot(Side player, Board b, int d) {
+        int numMoves = SearchWorker.generateMoves(player, b, _rootMoves);
+        if (_ordering) {
+            orderRootMoves(player, b, numMoves);
+        }
+        SearchWorker.moveToFront(bestMove, _rootMoves, numMoves);
+        _root = b;
+        _searchNum += 1;
+        _rootPlayer = player;
+        _rootDepth = d;
+        _bestValue = -INFINITY;
+        _bestIndex = -1;
+        searchRootMove(0);
+        ForkJoinPool pool = getGame().getSearchPool();
+        if (pool == null) {
+            for (int i = 1; i < numMoves && !_stopped; i += 1) {
+                searchRootMove(i);
+            }
+        } else if (numMoves > 1) {
+            pool.invoke(new RootSearch(1, numMoves));
+        }
+        if (_bestIndex != -1) {
+            bestMove = _rootMoves[_bestIndex];
+        }
+        if (!_stopped) {
+            int orientation = b.orientation();
+            _table.store(b.positionKey(orientation), d, _bestValue, EXACT,
+                         Symmetry.forSize(b.size()).image(orientation,
+                                                          bestMove));
+        }
+        return _bestValue;
+    }
+
+    /** Reorder the first NUMMOVES entries of _rootMoves, the moves of
+     *  PLAYER on board B, so that captures come first, then other moves
+     *  that cause explosions, then the rest, each group in increasing
+     *  order of square number.  Unlike the ordering below the root, this
+     *  depends only on B, so that searches with any number of threads
+     *  consider the root moves in the same order. */
+    private void orderRootMoves(Side player, Board b, int numMoves) {
+        Adjacency adjacency = Adjacency.forSize(b.size());
+        int[] scores = new int[numMoves];
+        for (int k = 0; k < numMoves; k += 1) {
+            scores[k] = SearchWorker.tacticalScore(player, b, adjacency,
+                                                   _rootMoves[k]);
+        }
+        int[] ordered = new int[numMoves];
+        int n = 0;
+        for (int score : ROOT_SCORES) {
+            for (int k = 0; k < numMoves; k += 1) {
+                if (scores[k] == score) {
+                    ordered[n] = _rootMoves[k];
+                    n += 1;
                 }
             }
         }
-        return currentBestValue;
+        System.arraycopy(ordered, 0, _rootMoves, 0, numMoves);
     }
 
-    /** Returns heuristic value of board B for player P.
-     *  Higher is better for P
-     *  @param player current player
-     *  @param b current board
-     *  @return return evaluation of the board
-     */
-    private double staticEval(Side player, Board b) {
-        int numForPlayer = b.numOfSide(player);
-        double sum = 1.0 * b.numPieces();
-        return numForPlayer / sum;
+    /** Search root move #I (in searching order) of the current root
+     *  search with an idle worker, and make it the best root move
+     *  if it is the first with the greatest value found so far.  The
+     *  search's alpha bound is the best value found by the time it
+     *  starts, so that a move can be cut off once it is known not to be
+     *  better than an earlier one (or as good as a later one). */
+    private void searchRootMove(int i) {
+        int alpha;
+        synchronized (this) {
+            alpha = i < _bestIndex ? _bestValue - 1 : _bestValue;
+        }
+        SearchWorker worker = _idleWorkers.poll();
+        if (worker == null) {
+            worker = new SearchWorker(this);
+        }
+        worker.setRoot(_root, _searchNum);
+        worker.stats().clear();
+        MutableBoard board = worker.getBoard();
+        board.addSpot(_rootPlayer, _rootMoves[i]);
+        worker.stats().countMove(board.cascadeLength());
+        int value = -worker.search(_rootPlayer.opposite(), _rootDepth - 1,
+                                   -INFINITY, -alpha, 1);
+        board.undo();
+        _idleWorkers.add(worker);
+        synchronized (this) {
+            _stats.add(worker.stats());
+            if (!_stopped && (value > _bestValue
+                              || (value == _bestValue && i < _bestIndex))) {
+                _bestValue = value;
+                _bestIndex = i;
+            }
+        }
     }
 
-    /** Find current available move for player p.
-     *  @param player current player
-     *  @param b current board
-     *  @return return all available moves
-     */
-    private ArrayList<Integer> validMoves(Side player, Board b) {
-        if (b.getWinner() != null) {
-            return null;
-        }
-        ArrayList<Integer> moves = new ArrayList<Integer>();
-        int boardSize = b.size() * b.size();
-        Side opponent = player.opposite();
-        for (int i = 0; i < boardSize; i += 1) {
-            Square s = b.get(i);
-            if (s.getSide() != opponent) {
-                moves.add(i);
+    /** Check whether the current search has run out of time, stopping it
+     *  if so.  Called periodically by searching workers. */
+    void checkClock() {
+        if (System.currentTimeMillis() > _deadline) {
+            _stopped = true;
+        }
+    }
+
+    /** Return true iff the current search is to be abandoned. */
+    boolean stopped() {
+        return _stopped;
+    }
+
+    /** Return true iff searches order moves heuristically (otherwise,
+     *  the move from the transposition table is searched first, and
+     *  the rest in order of square number). */
+    boolean ordering() {
+        return _ordering;
+    }
+
+    /** Turn heuristic move ordering on if ON, and off otherwise. */
+    void setOrdering(boolean on) {
+        _ordering = on;
+    }
+
+    /** Return the best move for me on board B, found by a search to
+     *  depth D with no time limit. */
+    int searchToDepth(Board b, int d) {
+        _table = getGame().getTable();
+        startClock(NO_LIMIT);
+        return searchIteratively(getSide(), b, d);
+    }
+
+    /** Return the best move for me on board B, found by iterative
+     *  deepening for up to LIMIT milliseconds. */
+    int searchFor(Board b, long limit) {
+        _table = getGame().getTable();
+        startClock(timeLimit(limit));
+        return searchIteratively(getSide(), b, MAX_PLY);
+    }
+
+    /** Return the number of nodes visited by my last search. */
+    long nodes() {
+        return _stats.nodes();
+    }
+
+    /** Return the depth of the last iteration my last search completed
+     *  (0 if none). */
+    int depth() {
+        return _stats.depth();
+    }
+
+    /** Return the transposition table used by the current search. */
+    TranspositionTable table() {
+        return _table;
+    }
+
+    /** A task that searches a range of the current root moves, splitting
+     *  it among the threads of a ForkJoinPool. */
+    private class RootSearch extends RecursiveAction {
+
+        /** A task searching root moves #LOW through #HIGH-1. */
+        RootSearch(int low, int high) {
+            _low = low;
+            _high = high;
+        }
+
+        @Override
+        protected void compute() {
+            if (_high - _low == 1) {
+                if (!_stopped) {
+                    searchRootMove(_low);
+                }
+            } else {
+                int mid = (_low + _high) / 2;
+                invokeAll(new RootSearch(_low, mid),
+                          new RootSearch(mid, _high));
             }
         }
-        return moves;
+
+        /** Bounds of my range of root moves. */
+        private final int _low, _high;
     }
+
+    /** Searchers not currently in use.  A thread searching a root move
+     *  borrows one, creating it if there are none, so there are only as
+     *  many as there have been simultaneous searches. */
+    private final ConcurrentLinkedQueue<SearchWorker> _idleWorkers =
+        new ConcurrentLinkedQueue<SearchWorker>();
+
+    /** Position at the root of the current search. */
+    private Board _root;
+    /** Number of root searches begun, identifying the current one. */
+    private int _searchNum;
+    /** Player to move at the root of the current search. */
+    private Side _rootPlayer;
+    /** Depth of the current root search. */
+    private int _rootDepth;
+    /** Moves at the root of the current search, in searching order,
+     *  at the start of a buffer with room for every square. */
+    private int[] _rootMoves;
+    /** Greatest value of a root move found so far. */
+    private int _bestValue;
+    /** Index in _rootMoves of the first move valued at _bestValue. */
+    private int _bestIndex;
 }
@@ -0,0 +1,213 @@
+package jump61;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Unit tests of the AI's searches.
+ *  @author Dasheng Chen
+ */
+public class AITest {
+
+    /** Return a new Game with no input, discarding its output. */
+    private static Game newGame() {
+        return new Game(new StringReader(""), new StringWriter(),
+                        new StringWriter(), new StringWriter());
+    }
+
+    /** Return a 5x5 board after a few moves of each side. */
+    private static Board midgame() {
+        Board b = new MutableBoard(5);
+        int[] moves = { 0, 24, 6, 18, 12, 20, 6, 4, 1, 23, 12, 19 };
+        Side player = Side.RED;
+        for (int m : moves) {
+            b.addSpot(player, m);
+            player = player.opposite();
+        }
+        return b;
+    }
+
+    /** Return an N x N board after MOVES moves, chosen by a fixed rule
+     *  from STEP. */
+    private static Board position(int N, int moves, int step) {
+        Board b = new MutableBoard(N);
+        Side player = Side.RED;
+        for (int k = 0; k < moves && b.getWinner() == null; k += 1) {
+            int m = (k * step + 11) % (N * N);
+            while (!b.isLegal(player, m)) {
+                m = (m + 1) % (N * N);
+            }
+            b.addSpot(player, m);
+            player = player.opposite();
+        }
+        return b;
+    }
+
+    /** Return an 8x8 board after a few moves of each side. */
+    private static Board largeMidgame() {
+        return position(8, 24, 37);
+    }
+
+    @Test
+    public void testTimeBudget() {
+        Board b = largeMidgame();
+        AI ai = new AI(newGame(), Side.RED);
+        long start = System.nanoTime();
+        int move = ai.searchFor(b, BUDGET);
+        long elapsed = (System.nanoTime() - start) / MILLI;
+        assertTrue("took " + elapsed + " ms", elapsed < BUDGET + MARGIN);
+        assertTrue(ai.depth() >= 1);
+        assertTrue(b.isLegal(Side.RED, move));
+    }
+
+    @Test
+    public void testStoppedSearchUsesLastIteration() {
+        Board b = largeMidgame();
+        AI timed = new AI(newGame(), Side.RED);
+        int move = timed.searchFor(b, BUDGET);
+        int depth = timed.depth();
+        assertTrue(depth >= 1 && depth < AI.MAX_PLY);
+        AI fixed = new AI(newGame(), Side.RED);
+        assertEquals(move, fixed.searchToDepth(b, depth));
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        Board[] boards = {
+            midgame(), position(4, 10, 5), position(6, 20, 13),
+            position(6, 40, 7), largeMidgame()
+        };
+        int[] depths = { 4, 5, 4, 4, 3 };
+        Game parallel = newGame();
+        parallel.setThreads(PARALLEL_THREADS);
+        try {
+            for (int k = 0; k < boards.length; k += 1) {
+                Side player = boards[k].whoseMove();
+                AI serialAI = new AI(newGame(), player);
+                AI parallelAI = new AI(parallel, player);
+                parallel.getTable().clear();
+                assertEquals("position #" + k,
+                             serialAI.searchToDepth(boards[k], depths[k]),
+                             parallelAI.searchToDepth(boards[k],
+                                                      depths[k]));
+            }
+        } finally {
+            parallel.setThreads(1);
+        }
+    }
+
+    @Test
+    public void testOrderingReducesNodes() {
+        Board b = midgame();
+        AI ordered = new AI(newGame(), Side.RED);
+        AI unordered = new AI(newGame(), Side.RED);
+        unordered.setOrdering(false);
+        ordered.searchToDepth(b, 4);
+        unordered.searchToDepth(b, 4);
+        assertTrue(ordered.nodes() < unordered.nodes());
+    }
+
+    @Test
+    public void testTakesWin() {
+        Board b = new MutableBoard(2);
+        b.set(0, 1, Side.RED);
+        b.set(1, 1, Side.RED);
+        b.set(2, 2, Side.RED);
+        b.set(3, 1, Side.BLUE);
+        AI ai = new AI(newGame(), Side.RED);
+        int move = ai.searchToDepth(b, 3);
+        b.addSpot(Side.RED, move);
+        assertEquals(Side.RED, b.getWinner());
+    }
+
+    @Test
+    public void testSymmetricMoves() {
+        int[] moves = new int[25];
+        Board b = new MutableBoard(5);
+        assertEquals(6, SearchWorker.generateMoves(Side.RED, b, moves));
+        b.addSpot(Side.RED, 12);
+        assertEquals(5, SearchWorker.generateMoves(Side.BLUE, b, moves));
+        b.addSpot(Side.BLUE, 0);
+        assertEquals(14, SearchWorker.generateMoves(Side.RED, b, moves));
+        b.addSpot(Side.RED, 24);
+        assertEquals(13, SearchWorker.generateMoves(Side.BLUE, b, moves));
+        b.addSpot(Side.BLUE, 1);
+        assertEquals(23, SearchWorker.generateMoves(Side.RED, b, moves));
+    }
+
+    @Test
+    public void testStats() {
+        StringWriter output = new StringWriter();
+        Game game = new Game(new StringReader("size 4\nauto red\nstats on\n"
+                                              + "start\nstats\nquit\n"),
+                             new StringWriter(), output, new StringWriter());
+        game.play();
+        String text = output.toString();
+        assertTrue(text.contains("stats player=red depth="));
+        assertTrue(text.contains("stats player=blue depth="));
+        assertTrue(text.contains("Red: depth"));
+        assertTrue(text.contains("Blue: depth"));
+        AI ai = new AI(newGame(), Side.RED);
+        assertNull(ai.searchStats());
+    }
+
+    @Test
+    public void testPonder() throws InterruptedException {
+        Game game = newGame();
+        AI ai = new AI(game, Side.BLUE);
+        ai.startPondering();
+        Thread.sleep(PONDER_TIME);
+        ai.stopPondering();
+        ai.stopPondering();
+        Board b = new MutableBoard(game.getBoard());
+        b.addSpot(Side.RED, 0);
+        int move = ai.searchToDepth(b, 3);
+        assertTrue(b.isLegal(Side.BLUE, move));
+    }
+
+    @Test
+    public void testPonderSavesSearch() throws InterruptedException {
+        Game game = new Game(new StringReader("size 4\nquit\n"),
+                             new StringWriter(), new StringWriter(),
+                             new StringWriter());
+        game.play();
+        AI pondering = new AI(game, Side.BLUE);
+        pondering.startPondering();
+        long deadline = System.currentTimeMillis() + PONDER_LIMIT;
+        while (pondering.pondering()
+               && System.currentTimeMillis() < deadline) {
+            Thread.sleep(PONDER_POLL);
+        }
+        pondering.stopPondering();
+        Board b = new MutableBoard(game.getBoard());
+        b.addSpot(Side.RED, 5);
+        int move = pondering.searchToDepth(b, REPLY_DEPTH);
+        assertTrue(b.isLegal(Side.BLUE, move));
+        AI fresh = new AI(newGame(), Side.BLUE);
+        fresh.searchToDepth(b, REPLY_DEPTH);
+        assertTrue(pondering.nodes() + " vs. " + fresh.nodes(),
+                   2 * pondering.nodes() < fresh.nodes());
+    }
+
+    /** Time allowed for pondering in testPonder (milliseconds). */
+    private static final long PONDER_TIME = 200;
+    /** Longest time allowed for pondering to end of its own accord in
+     *  testPonderSavesSearch, and the interval at which it is checked
+     *  (milliseconds). */
+    private static final long PONDER_LIMIT = 5000, PONDER_POLL = 10;
+    /** Depth of the search for a reply on a 4x4 board, as made by
+     *  AI.makeMove. */
+    private static final int REPLY_DEPTH = 5;
+    /** Time budget of the timed searches (milliseconds). */
+    private static final long BUDGET = 300;
+    /** Time by which a timed search may overrun its budget
+     *  (milliseconds). */
+    private static final long MARGIN = 150;
+    /** Number of threads of the parallel searches. */
+    private static final int PARALLEL_THREADS = 4;
+    /** Nanoseconds per millisecond. */
+    private static final long MILLI = 1000000;
+
+}
@@ -0,0 +1,84 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** The neighbor structure of an N x N board, computed once per size and
+ *  shared by all boards of that size.  The neighbors of all squares are
+ *  stored in a single array, in compressed-row form: the neighbors of
+ *  square #i are neighbor(j) for first(i) <= j < first(i + 1).  A
+ *  square's number of neighbors is also the number of spots it can hold
+ *  without exploding.  Adjacencies are immutable once built.
+ *  @author Dasheng Chen
+ */
+class Adjacency {
+
+    /** The neighbor structure of an N x N board. */
+    private Adjacency(int N) {
+        int numSquares = N * N;
+        _first = new int[numSquares + 1];
+        _counts = new int[numSquares];
+        int[] list = new int[4 * numSquares];
+        int k = 0;
+        for (int i = 0; i < numSquares; i += 1) {
+            int r = i / N, c = i % N;
+            _first[i] = k;
+            if (r > 0) {
+                list[k] = i - N;
+                k += 1;
+            }
+            if (r < N - 1) {
+                list[k] = i + N;
+                k += 1;
+            }
+            if (c > 0) {
+                list[k] = i - 1;
+                k += 1;
+            }
+            if (c < N - 1) {
+                list[k] = i + 1;
+                k += 1;
+            }
+            _counts[i] = k - _first[i];
+        }
+        _first[numSquares] = k;
+        _neighbors = Arrays.copyOf(list, k);
+    }
+
+    /** Return the (shared) neighbor structure of an N x N board. */
+    static synchronized Adjacency forSize(int N) {
+        if (N >= _cache.length) {
+            _cache = Arrays.copyOf(_cache, N + 1);
+        }
+        if (_cache[N] == null) {
+            _cache[N] = new Adjacency(N);
+        }
+        return _cache[N];
+    }
+
+    /** Return the number of neighbors of square #N. */
+    int count(int n) {
+        return _counts[n];
+    }
+
+    /** Return the index in the neighbor list of the first neighbor of
+     *  square #N.  The neighbors of N end just before first(N + 1). */
+    int first(int n) {
+        return _first[n];
+    }
+
+    /** Return entry #J of the neighbor list. */
+    int neighbor(int j) {
+        return _neighbors[j];
+    }
+
+    /** Neighbor counts, indexed by square number. */
+    private final int[] _counts;
+    /** Starting positions in _neighbors, indexed by square number. */
+    private final int[] _first;
+    /** Neighbors of all squares, in order of square number. */
+    private final int[] _neighbors;
+
+    /** Adjacencies already built, indexed by board size. */
+    private static Adjacency[] _cache =
+        new Adjacency[Defaults.MAX_BOARD_SIZE + 1];
+}
@@ -0,0 +1,495 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import ucb.util.CommandArgs;
+
+/** Micro-benchmarks of the board and search operations on which the
+ *  speed of the automated players rests: moves with and without
+ *  cascades (each followed by its undo), copying, counting squares and
+ *  finding the winner, hashing, move generation, and fixed-depth
+ *  searches on 4x4, 6x6, and 10x10 boards (the 6x6 one also divided
+ *  among several threads, to measure the speedup of parallel search).
+ *  The positions come from the resource Benchmarks.txt, as dumped
+ *  boards.  Each benchmark is run repeatedly for a few untimed warm-up
+ *  iterations (giving the JIT compiler time to settle) and then for
+ *  several timed ones, each lasting a fixed time; the result is the
+ *  mean time per operation over the timed iterations.  Results are
+ *  printed in a table and may also be written as records, one line of
+ *  KEY=VALUE fields per benchmark, for comparing versions of the
+ *  program.
+ *  @author Dasheng Chen
+ */
+public class Benchmark {
+
+    /** Options accepted by main. */
+    private static final String OPTIONS =
+        "--warmup=(\\d+){0,1} --iterations=(\\d+){0,1} --time=(\\d+){0,1} "
+        + "--only=(.+){0,1} --records=(.+){0,1}";
+
+    /** Usage message for main. */
+    private static final String USAGE =
+        "Usage: java jump61.Benchmark [ --warmup=N ] [ --iterations=N ]"
+        + " [ --time=MILLIS ]\n"
+        + "           [ --only=REGEXP ] [ --records=FILE ]\n"
+        + "  --warmup:     Number of untimed iterations (default 3).\n"
+        + "  --iterations: Number of timed iterations (default 5).\n"
+        + "  --time:       Duration of each iteration (default 500).\n"
+        + "  --only:       Run only benchmarks whose names contain a"
+        + " match for REGEXP.\n"
+        + "  --records:    File to which to write a line recording each"
+        + " result.\n";
+
+    /** Name of the resource holding the benchmark positions. */
+    static final String POSITIONS = "jump61/Benchmarks.txt";
+
+    /** Default number of untimed iterations. */
+    private static final int WARMUP = 3;
+    /** Default number of timed iterations. */
+    private static final int ITERATIONS = 5;
+    /** Default duration of an iteration (milliseconds). */
+    private static final long TIME = 500;
+    /** Least time taken by one batch of operations (nanoseconds), so
+     *  that reading the clock costs little by comparison. */
+    private static final long BATCH_NANOS = 1000000;
+    /** Nanoseconds per millisecond. */
+    private static final long MILLI = 1000000;
+    /** Size (log2 of entries) of the transposition table used by
+     *  searches, which is cleared before each. */
+    private static final int TABLE_LOG_SIZE = 16;
+
+    /** Run the benchmarks as directed by the options in ARGS0 (see
+     *  USAGE). */
+    public static void main(String... args0) {
+        CommandArgs args = new CommandArgs(OPTIONS, args0);
+        if (!args.ok()) {
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+        try {
+            new Benchmark(args).run(new PrintWriter(System.out, true));
+        } catch (IllegalArgumentException | IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Benchmarks configured by ARGS (see USAGE). */
+    Benchmark(CommandArgs args) {
+        _warmup = (int) option(args, "--warmup", WARMUP);
+        _iterations = (int) option(args, "--iterations", ITERATIONS);
+        _timeNanos = option(args, "--time", TIME) * MILLI;
+        String only = args.getFirst("--only");
+        _only = only == null ? null : Pattern.compile(only);
+        _records = args.getFirst("--records");
+        if (_iterations < 1) {
+            throw new IllegalArgumentException("need at least one"
+                                               + " iteration");
+        }
+    }
+
+    /** Return the value of option KEY in ARGS, or DEFLT if absent. */
+    private static long option(CommandArgs args, String key, long deflt) {
+        String value = args.getFirst(key);
+        return value == null ? deflt : Long.parseLong(value);
+    }
+
+    /** Run my benchmarks, printing a table of the results on OUT and
+     *  writing them to my records file, if any. */
+    void run(PrintWriter out) throws IOException {
+        PrintWriter records = null;
+        if (_records != null) {
+            records = new PrintWriter(new BufferedWriter
+                                      (new FileWriter(_records)));
+        }
+        try {
+            for (Case bench : cases(readPositions())) {
+                if (_only != null && !_only.matcher(bench.name()).find()) {
+                    continue;
+                }
+                measure(bench);
+                out.printf("%-28s %14.1f ns/op  +- %5.1f%%%n",
+                           bench.name(), bench.mean(),
+                           100.0 * bench.deviation() / bench.mean());
+                if (records != null) {
+                    records.println(bench.toRecord());
+                }
+            }
+        } finally {
+            if (records != null) {
+                records.close();
+            }
+        }
+    }
+
+    /** Run BENCH for my warm-up and timed iterations, recording the
+     *  times of the latter in it. */
+    private void measure(Case bench) {
+        int batch = calibrate(bench);
+        for (int k = 0; k < _warmup; k += 1) {
+            iterate(bench, batch);
+        }
+        double[] times = new double[_iterations];
+        for (int k = 0; k < _iterations; k += 1) {
+            times[k] = iterate(bench, batch);
+        }
+        bench.setTimes(times, batch);
+    }
+
+    /** Run BENCH for my iteration time, in batches that double in size
+     *  until one takes at least BATCH_NANOS, and return the final batch
+     *  size.  Batches measured while the code is still being compiled
+     *  are slow, so batch sizes are only ever increased. */
+    private int calibrate(Case bench) {
+        int batch = 1;
+        long start = System.nanoTime(), now;
+        do {
+            long batchStart = System.nanoTime();
+            _sink += bench.run(batch);
+            now = System.nanoTime();
+            if (now - batchStart < BATCH_NANOS) {
+                batch *= 2;
+            }
+        } while (now - start < _timeNanos);
+        return batch;
+    }
+
+    /** Run BENCH in batches of BATCH operations for my iteration time,
+     *  and return the mean time per operation (nanoseconds). */
+    private double iterate(Case bench, int batch) {
+        long start = System.nanoTime(), elapsed, ops;
+        ops = 0;
+        do {
+            _sink += bench.run(batch);
+            ops += batch;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < _timeNanos);
+        return (double) elapsed / ops;
+    }
+
+    /** Return the positions in the resource POSITIONS, indexed by
+     *  name. */
+    static Map<String, MutableBoard> readPositions() throws IOException {
+        InputStream resource =
+            Benchmark.class.getClassLoader().getResourceAsStream(POSITIONS);
+        if (resource == null) {
+            throw new IOException("cannot find " + POSITIONS);
+        }
+        BufferedReader inp =
+            new BufferedReader(new InputStreamReader(resource));
+        Map<String, MutableBoard> result =
+            new HashMap<String, MutableBoard>();
+        String name = null;
+        StringBuilder dump = null;
+        for (String line = inp.readLine(); line != null;
+             line = inp.readLine()) {
+            line = line.trim();
+            if (dump != null) {
+                dump.append(line).append('\n');
+                if (line.equals("===")) {
+                    result.put(name, new MutableBoard(dump.toString()));
+                    dump = null;
+                }
+            } else if (line.equals("===")) {
+                dump = new StringBuilder(line).append('\n');
+            } else if (!line.isEmpty() && !line.startsWith("#")) {
+                name = line;
+            }
+        }
+        inp.close();
+        return result;
+    }
+
+    /** Return the benchmarks on POSITIONS. */
+    private static List<Case> cases(Map<String, MutableBoard> positions) {
+        List<Case> result = new ArrayList<Case>();
+        final MutableBoard mid6 = position(positions, "mid6");
+        final MutableBoard mid10 = position(positions, "mid10");
+        final MutableBoard cascade10 = position(positions, "cascade10");
+
+        final Board[] boards = { mid10, cascade10 };
+
+        final int quiet = quietMove(mid6);
+        result.add(new Case("addSpot.quiet.6x6") {
+            @Override
+            long run(int ops) {
+                Side player = mid6.whoseMove();
+                for (int k = 0; k < ops; k += 1) {
+                    mid6.addSpot(player, quiet);
+                    mid6.undo();
+                }
+                return mid6.numPieces();
+            }
+        });
+        final int cascade = cascadeMove(cascade10);
+        result.add(new Case("addSpot.cascade.10x10") {
+            @Override
+            long run(int ops) {
+                Side player = cascade10.whoseMove();
+                for (int k = 0; k < ops; k += 1) {
+                    cascade10.addSpot(player, cascade);
+                    cascade10.undo();
+                }
+                return cascade10.numPieces();
+            }
+        });
+        result.add(new Case("copy.10x10") {
+            @Override
+            long run(int ops) {
+                for (int k = 0; k < ops; k += 1) {
+                    _copy.copy(mid10);
+                }
+                return _copy.numPieces();
+            }
+
+            /** Destination of the copies. */
+            private final MutableBoard _copy = new MutableBoard(10);
+        });
+        result.add(new Case("numOfSide.10x10") {
+            @Override
+            long run(int ops) {
+                long sum;
+                sum = 0;
+                for (int k = 0; k < ops; k += 1) {
+                    sum += boards[k & 1].numOfSide(Side.RED);
+                }
+                return sum;
+            }
+        });
+        result.add(new Case("getWinner.10x10") {
+            @Override
+            long run(int ops) {
+                long sum;
+                sum = 0;
+                for (int k = 0; k < ops; k += 1) {
+                    sum += boards[k & 1].getWinner() == null ? 1 : 0;
+                }
+                return sum;
+            }
+        });
+        result.add(new Case("hashCode.10x10") {
+            @Override
+            long run(int ops) {
+                long sum;
+                sum = 0;
+                for (int k = 0; k < ops; k += 1) {
+                    sum += boards[k & 1].hashCode();
+                }
+                return sum;
+            }
+        });
+        result.add(generateMoves(mid6));
+        result.add(generateMoves(mid10));
+        result.add(search(position(positions, "mid4"), SEARCH_DEPTH_4));
+        result.add(search(mid6, SEARCH_DEPTH_6));
+        result.add(search(mid10, SEARCH_DEPTH_10));
+        for (int threads : PARALLEL_THREADS) {
+            result.add(search(mid6, SEARCH_DEPTH_6, threads));
+        }
+        return result;
+    }
+
+    /** Return the position named NAME in POSITIONS.  Throws
+     *  IllegalArgumentException if there is none. */
+    private static MutableBoard position(Map<String, MutableBoard> positions,
+                                         String name) {
+        MutableBoard b = positions.get(name);
+        if (b == null) {
+            throw new IllegalArgumentException("missing position: " + name);
+        }
+        return b;
+    }
+
+    /** Return the first legal move on B that sets off no explosion. */
+    private static int quietMove(Board b) {
+        Side player = b.whoseMove();
+        for (int n = 0; n < b.size() * b.size(); n += 1) {
+            if (b.isLegal(player, n) && b.spots(n) < b.neighbors(n)) {
+                return n;
+            }
+        }
+        throw new IllegalArgumentException("no quiet move");
+    }
+
+    /** Return the legal move on B (a MutableBoard) that sets off the most
+     *  explosions without winning. */
+    private static int cascadeMove(MutableBoard b) {
+        Side player = b.whoseMove();
+        int best = -1, longest = -1;
+        for (int n = 0; n < b.size() * b.size(); n += 1) {
+            if (b.isLegal(player, n)) {
+                b.addSpot(player, n);
+                if (b.getWinner() == null && b.cascadeLength() > longest) {
+                    best = n;
+                    longest = b.cascadeLength();
+                }
+                b.undo();
+            }
+        }
+        if (best == -1) {
+            throw new IllegalArgumentException("no cascading move");
+        }
+        return best;
+    }
+
+    /** Return a benchmark of move generation on B. */
+    private static Case generateMoves(final Board b) {
+        final int[] moves = new int[b.size() * b.size()];
+        return new Case(String.format("generateMoves.%dx%<d", b.size())) {
+            @Override
+            long run(int ops) {
+                long sum;
+                sum = 0;
+                for (int k = 0; k < ops; k += 1) {
+                    sum += SearchWorker.generateMoves(b.whoseMove(), b, moves);
+                }
+                return sum;
+            }
+        };
+    }
+
+    /** Return a benchmark of searches to depth DEPTH on B, each from an
+     *  empty transposition table. */
+    private static Case search(final Board b, final int depth) {
+        return search(b, depth, 1);
+    }
+
+    /** Return a benchmark of searches to depth DEPTH on B divided among
+     *  THREADS threads, each from an empty transposition table. */
+    private static Case search(final Board b, final int depth,
+                               int threads) {
+        StringWriter output = new StringWriter();
+        final Game game =
+            new Game(new StringReader(String.format("table %d%nquit%n",
+                                                    TABLE_LOG_SIZE)),
+                     output, output, output);
+        game.play();
+        game.setThreads(threads);
+        final AI ai = new AI(game, b.whoseMove());
+        String name = String.format("search.%dx%<d.d%d", b.size(), depth);
+        if (threads > 1) {
+            name += ".t" + threads;
+        }
+        return new Case(name) {
+            @Override
+            long run(int ops) {
+                long sum;
+                sum = 0;
+                for (int k = 0; k < ops; k += 1) {
+                    game.getTable().clear();
+                    sum += ai.searchToDepth(b, depth);
+                }
+                return sum;
+            }
+        };
+    }
+
+    /** One benchmark, and its results once measured. */
+    abstract static class Case {
+
+        /** A benchmark named NAME. */
+        Case(String name) {
+            _name = name;
+        }
+
+        /** Perform my operation OPS times, returning a value computed from
+         *  the results (so that the compiler cannot discard them). */
+        abstract long run(int ops);
+
+        /** Return my name. */
+        String name() {
+            return _name;
+        }
+
+        /** Record my results: the mean times per operation of my timed
+         *  iterations, TIMES (nanoseconds), measured in batches of BATCH
+         *  operations. */
+        void setTimes(double[] times, int batch) {
+            _times = times;
+            _batch = batch;
+        }
+
+        /** Return my mean time per operation (nanoseconds). */
+        double mean() {
+            double sum;
+            sum = 0;
+            for (double t : _times) {
+                sum += t;
+            }
+            return sum / _times.length;
+        }
+
+        /** Return the standard deviation of the mean times per operation
+         *  of my iterations (nanoseconds). */
+        double deviation() {
+            if (_times.length < 2) {
+                return 0.0;
+            }
+            double mean = mean(), sum;
+            sum = 0;
+            for (double t : _times) {
+                sum += (t - mean) * (t - mean);
+            }
+            return Math.sqrt(sum / (_times.length - 1));
+        }
+
+        /** Return my least mean time per operation in an iteration
+         *  (nanoseconds). */
+        double min() {
+            double result = Double.MAX_VALUE;
+            for (double t : _times) {
+                result = Math.min(result, t);
+            }
+            return result;
+        }
+
+        /** Return my results as one line of space-separated KEY=VALUE
+         *  fields, with times in nanoseconds per operation. */
+        String toRecord() {
+            return String.format("benchmark=%s ns_per_op=%.1f stdev=%.1f"
+                                 + " min=%.1f iterations=%d batch=%d",
+                                 _name, mean(), deviation(), min(),
+                                 _times.length, _batch);
+        }
+
+        /** My name. */
+        private final String _name;
+        /** Mean times per operation of my timed iterations. */
+        private double[] _times;
+        /** Number of operations per batch. */
+        private int _batch;
+    }
+
+    /** Depth of the searches on 4x4, 6x6, and 10x10 boards. */
+    private static final int
+        SEARCH_DEPTH_4 = 6, SEARCH_DEPTH_6 = 4, SEARCH_DEPTH_10 = 3;
+    /** Numbers of threads among which the 6x6 search is also divided. */
+    private static final int[] PARALLEL_THREADS = { 2, 4, 8 };
+
+    /** Number of untimed iterations. */
+    private final int _warmup;
+    /** Number of timed iterations. */
+    private final int _iterations;
+    /** Duration of each iteration (nanoseconds). */
+    private final long _timeNanos;
+    /** Pattern selecting the benchmarks to run, or null for all. */
+    private final Pattern _only;
+    /** Name of the file of records, or null for none. */
+    private final String _records;
+    /** Accumulates values computed by benchmarks, so that the compiler
+     *  cannot discard their work. */
+    private long _sink;
+}
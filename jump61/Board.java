@@ -40,6 +40,18 @@ abstract class Board extends Observable {
      *  size() - 2*size() - 1, etc. */
     abstract Square get(int n);
 
+    /** Returns the Side owning square #N.  Equivalent to
+     *  get(N).getSide(), but may be faster. */
+    Side side(int n) {
+        return get(n).getSide();
+    }
+
+    /** Returns the number of spots on square #N.  Equivalent to
+     *  get(N).getSpots(), but may be faster. */
+    int spots(int n) {
+        return get(n).getSpots();
+    }
+
     /** Returns the total number of spots on the board. */
     abstract int numPieces();
 
@@ -86,8 +98,7 @@ abstract class Board extends Observable {
      *  to square #N. */
     boolean isLegal(Side player, int n) {
         if (exists(n)) {
-            Side side = this.get(n).getSide();
-            return player.playableSquare(side);
+            return player.playableSquare(this.side(n));
         }
         return false;
     }
@@ -114,6 +125,82 @@ abstract class Board extends Observable {
     /** Return the number of squares of given COLOR. */
     abstract int numOfSide(Side color);
 
+    /** Return a 64-bit key identifying the current position (see
+     *  Zobrist).  Equal positions have equal keys; distinct positions
+     *  have distinct keys with very high probability. */
+    long positionKey() {
+        return Zobrist.key(this);
+    }
+
+    /** Return the key (see positionKey()) of the image of the current
+     *  position under symmetry #T (see Symmetry). */
+    long positionKey(int t) {
+        if (t == Symmetry.IDENTITY) {
+            return positionKey();
+        }
+        return Zobrist.key(this, Symmetry.forSize(size()), t);
+    }
+
+    /** Return the symmetry carrying the current position to its
+     *  canonical orientation: the least of its images under symmetries,
+     *  comparing them square by square in order of square number (the
+     *  lowest-numbered such symmetry, if several images are equal). */
+    final int orientation() {
+        Symmetry symmetry = Symmetry.forSize(size());
+        int best = Symmetry.IDENTITY;
+        for (int t = 1; t < Symmetry.COUNT; t += 1) {
+            if (compareImages(symmetry, t, best) < 0) {
+                best = t;
+            }
+        }
+        return best;
+    }
+
+    /** Return the key of the canonical orientation (see orientation) of
+     *  the current position.  Positions that are images of one another
+     *  under symmetries have equal canonical keys. */
+    final long canonicalKey() {
+        return positionKey(orientation());
+    }
+
+    /** Return the set of symmetries that leave the current position
+     *  unchanged, as a bit mask in which bit #T stands for symmetry #T.
+     *  It always contains Symmetry.IDENTITY. */
+    final int symmetries() {
+        Symmetry symmetry = Symmetry.forSize(size());
+        int result = 1 << Symmetry.IDENTITY;
+        for (int t = 1; t < Symmetry.COUNT; t += 1) {
+            if (compareImages(symmetry, t, Symmetry.IDENTITY) == 0) {
+                result |= 1 << t;
+            }
+        }
+        return result;
+    }
+
+    /** Return a value < 0, 0, or > 0 as the image of the current position
+     *  under symmetry #T of SYMMETRY precedes, equals, or follows its
+     *  image under symmetry #U, comparing the contents of squares in
+     *  order of square number.  Images of most positions differ within
+     *  their first few squares. */
+    private int compareImages(Symmetry symmetry, int t, int u) {
+        int area = size() * size();
+        for (int n = 0; n < area; n += 1) {
+            Square a = get(symmetry.preimage(t, n));
+            Square b = get(symmetry.preimage(u, n));
+            if (a != b) {
+                return rank(a) - rank(b);
+            }
+        }
+        return 0;
+    }
+
+    /** Return the rank of SQ in the order in which compareImages
+     *  compares squares. */
+    private static int rank(Square sq) {
+        return sq.getSide().ordinal() * (Square.MAX_SPOTS + 1)
+            + sq.getSpots();
+    }
+
     /** Add a spot from PLAYER at row R, column C.  Assumes
      *  isLegal(PLAYER, R, C). */
     void addSpot(Side player, int r, int c) {
@@ -148,42 +235,45 @@ abstract class Board extends Observable {
     /** Returns my dumped representation. */
     @Override
     public String toString() {
-        String output = "===\n";
-        for (int i = 0; i < this.size() * this.size(); i += 1) {
-            if (i % this.size() == 0) {
-                output += "    ";
-            }
-            if ((i + 1) % this.size() == 0) {
-                output += this.get(i).toString() + "\n";
-            } else {
-                output += this.get(i).toString() + " ";
+        int N = this.size();
+        StringBuilder output = new StringBuilder(8 + N * (3 * N + 4));
+        output.append("===\n");
+        for (int i = 0; i < N * N; i += 1) {
+            if (i % N == 0) {
+                output.append("    ");
             }
+            output.append(this.get(i).toString());
+            output.append((i + 1) % N == 0 ? '\n' : ' ');
         }
-        output += "===";
-        return output;
+        output.append("===");
+        return output.toString();
     }
 
     /** Returns an external rendition of me, suitable for
      *  human-readable textual display.  This is distinct from the dumped
      *  representation (returned by toString). */
     public String toDisplayString() {
-        String output = "";
+        int N = this.size();
+        StringBuilder output = new StringBuilder(N * (3 * N + 8));
+        StringBuilder columnIndex = new StringBuilder("     ");
         int row = 1;
-        String columnIndex = "";
-        for (int i = 0; i < this.size() * this.size(); i += 1) {
-            if (i % this.size() == 0) {
-                output += " " + row + "  " + this.get(i).toString() + " ";
-                columnIndex += row + "  ";
+        for (int i = 0; i < N * N; i += 1) {
+            if (i % N == 0) {
+                output.append(' ').append(row).append("  ");
+                output.append(this.get(i).toString()).append(' ');
+                if (row > 1) {
+                    columnIndex.append("  ");
+                }
+                columnIndex.append(row);
                 row += 1;
-            } else if ((i + 1) % this.size() == 0) {
-                output += this.get(i).toString() + "\n";
+            } else if ((i + 1) % N == 0) {
+                output.append(this.get(i).toString()).append('\n');
             } else {
-                output += this.get(i).toString() + " ";
+                output.append(this.get(i).toString()).append(' ');
             }
         }
-        columnIndex = "     " + columnIndex.trim();
-        output += columnIndex;
-        return output;
+        output.append(columnIndex);
+        return output.toString();
     }
 
     /** Returns the number of neighbors of the square at row R, column C. */
@@ -220,8 +310,6 @@ abstract class Board extends Observable {
     /** The length of an end of line on this system. */
     private static final int NL_LENGTH =
         System.getProperty("line.separator").length();
-    /** Board Array. */
-    protected Square[] _boardArray;
     /** Row size, same as Column. */
     protected int _size;
 }
@@ -125,6 +125,266 @@ public class BoardTest {
         checkBoard("#0U", B);
     }
 
+    @Test
+    public void testCascade() {
+        Board B = new MutableBoard(3);
+        B.set(1, 1, 2, RED);
+        B.set(1, 2, 3, RED);
+        B.set(2, 1, 3, BLUE);
+        B.set(2, 2, 4, RED);
+        B.set(3, 3, 1, BLUE);
+        B.addSpot(RED, 1, 1);
+        String output = "===\n";
+        output += "    1r 3r 2r\n";
+        output += "    3r 2r 2r\n";
+        output += "    2r 2r 1b\n";
+        output += "===";
+        assertEquals(output, B.toString());
+        B.undo();
+        assertEquals(4, B.get(2, 2).getSpots());
+        assertEquals(BLUE, B.get(2, 1).getSide());
+    }
+
+    @Test
+    public void testReadDump() {
+        Board A = new MutableBoard(3);
+        A.set(1, 1, 2, RED);
+        A.set(2, 3, 3, BLUE);
+        A.set(3, 2, 1, RED);
+        Board B = new MutableBoard(A.toString());
+        assertEquals(A, B);
+        assertEquals(A.positionKey(), B.positionKey());
+        assertEquals(2, B.numOfSide(RED));
+        assertEquals(A.numPieces(), B.numPieces());
+        for (String bad : new String[] { "===\n===", "1- 1- 1-",
+                                         "1- 1- 1- 2x", "0r 1- 1- 1-" }) {
+            try {
+                new MutableBoard(bad);
+                fail("expected IllegalArgumentException for " + bad);
+            } catch (IllegalArgumentException excp) {
+                continue;
+            }
+        }
+    }
+
+    @Test
+    public void testPerft() {
+        MutableBoard B = new MutableBoard(2);
+        Perft perft = new Perft(B);
+        long[] counts = { 1, 4, 12, 36, 52, 48 };
+        for (int depth = 0; depth < counts.length; depth += 1) {
+            assertEquals(counts[depth], perft.leaves(RED, depth));
+        }
+        B = new MutableBoard(3);
+        B.addSpot(RED, 2, 2);
+        Board A = new MutableBoard(B);
+        assertEquals(4040, new Perft(new MutableBoard(3)).leaves(RED, 4));
+        new Perft(B).leaves(BLUE, 4);
+        assertEquals(A, B);
+        assertEquals(A.positionKey(), B.positionKey());
+    }
+
+    @Test
+    public void testCounts() {
+        Board B = new MutableBoard(3);
+        B.addSpot(RED, 1, 1);
+        B.addSpot(BLUE, 3, 3);
+        B.addSpot(RED, 1, 1);
+        assertEquals(3, B.numOfSide(RED));
+        assertEquals(1, B.numOfSide(BLUE));
+        assertEquals(5, B.numOfSide(WHITE));
+        assertEquals(12, B.numPieces());
+        assertEquals(BLUE, B.whoseMove());
+        B.undo();
+        assertEquals(1, B.numOfSide(RED));
+        assertEquals(11, B.numPieces());
+        assertEquals(RED, B.whoseMove());
+        Board C = new MutableBoard(B);
+        assertEquals(1, C.numOfSide(BLUE));
+        assertEquals(11, C.numPieces());
+    }
+
+    @Test
+    public void testUndoAll() {
+        Board B = new MutableBoard(4);
+        String[] history = new String[40];
+        int sq = 0;
+        for (int k = 0; k < history.length && B.getWinner() == null; k += 1) {
+            history[k] = B.toString();
+            while (!B.isLegal(B.whoseMove(), sq)) {
+                sq = (sq + 7) % 16;
+            }
+            B.addSpot(B.whoseMove(), sq);
+            sq = (sq + 5) % 16;
+        }
+        for (int k = history.length - 1; k >= 0; k -= 1) {
+            if (history[k] != null) {
+                B.undo();
+                assertEquals("undo #" + k, history[k], B.toString());
+            }
+        }
+        assertEquals(16, B.numPieces());
+        assertEquals(16, B.numOfSide(WHITE));
+    }
+
+    @Test
+    public void testPositionKey() {
+        Board A = new MutableBoard(4);
+        Board B = new MutableBoard(4);
+        long initial = A.positionKey();
+        assertEquals(initial, B.positionKey());
+        assertNotEquals(initial, new MutableBoard(5).positionKey());
+        A.addSpot(RED, 1, 1);
+        A.addSpot(BLUE, 4, 4);
+        A.addSpot(RED, 2, 2);
+        B.addSpot(RED, 2, 2);
+        B.addSpot(BLUE, 4, 4);
+        B.addSpot(RED, 1, 1);
+        assertEquals(A.positionKey(), B.positionKey());
+        assertEquals(A, B);
+        assertEquals(A.hashCode(), B.hashCode());
+        assertEquals(A.positionKey(), new ConstantBoard(A).positionKey());
+        assertEquals(A.positionKey(), new MutableBoard(A).positionKey());
+        Board C = new MutableBoard(4);
+        C.set(1, 1, 2, BLUE);
+        C.set(2, 2, 2, RED);
+        Board D = new MutableBoard(4);
+        D.set(1, 1, 2, RED);
+        D.set(2, 2, 2, BLUE);
+        assertNotEquals(C.positionKey(), D.positionKey());
+        A.undo();
+        A.undo();
+        A.undo();
+        assertEquals(initial, A.positionKey());
+    }
+
+    @Test
+    public void testSquares() {
+        assertSame(Square.INITIAL, Square.square(WHITE, 0));
+        assertSame(Square.INITIAL, Square.square(RED, 0));
+        assertSame(Square.INITIAL, Square.square(WHITE, 3));
+        for (int spots = 1; spots <= Square.MAX_SPOTS; spots += 1) {
+            Square r = Square.square(RED, spots),
+                b = Square.square(BLUE, spots);
+            assertSame(r, Square.square(RED, spots));
+            assertEquals(RED, r.getSide());
+            assertEquals(BLUE, b.getSide());
+            assertEquals(spots, r.getSpots());
+            assertEquals(spots, b.getSpots());
+        }
+    }
+
+    @Test
+    public void testSquareRange() {
+        for (Side side : Side.values()) {
+            for (int spots : new int[] { -1, Square.MAX_SPOTS + 1 }) {
+                try {
+                    Square.square(side, spots);
+                    fail("expected IllegalArgumentException");
+                } catch (IllegalArgumentException excp) {
+                    assertTrue(excp.getMessage().endsWith(" " + spots));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPacked() {
+        for (Side side : Side.values()) {
+            for (int spots = 0; spots <= Square.MAX_SPOTS; spots += 1) {
+                byte cell = MutableBoard.pack(side, spots);
+                Square sq = Square.square(side, spots);
+                assertEquals(sq.getSide().ordinal(),
+                             MutableBoard.sideOf(cell));
+                assertEquals(sq.getSpots(), MutableBoard.spotsOf(cell));
+            }
+        }
+        MutableBoard B = new MutableBoard(5);
+        B.set(2, 2, 3, RED);
+        B.addSpot(BLUE, 5, 5);
+        B.addSpot(BLUE, 5, 5);
+        assertSame(Square.square(RED, 3), B.get(2, 2));
+        for (int n = 0; n < 25; n += 1) {
+            assertEquals(B.get(n).getSide(), B.side(n));
+            assertEquals(B.get(n).getSpots(), B.spots(n));
+        }
+        Board C = new MutableBoard(new ConstantBoard(B));
+        assertEquals(B, C);
+        assertEquals(B.hashCode(), C.hashCode());
+        C.addSpot(RED, 2, 2);
+        assertNotEquals(B, C);
+    }
+
+    @Test
+    public void testSymmetry() {
+        Board A = new MutableBoard(4);
+        assertEquals((1 << Symmetry.COUNT) - 1, A.symmetries());
+        A.addSpot(RED, 1, 1);
+        assertEquals(1 << Symmetry.IDENTITY | 1 << Symmetry.TRANSPOSE,
+                     A.symmetries());
+        A.addSpot(BLUE, 1, 2);
+        A.addSpot(RED, 3, 4);
+        assertEquals(1 << Symmetry.IDENTITY, A.symmetries());
+        Board B = new MutableBoard(4);
+        B.addSpot(RED, 4, 4);
+        B.addSpot(BLUE, 4, 3);
+        B.addSpot(RED, 2, 1);
+        assertNotEquals(A.positionKey(), B.positionKey());
+        assertEquals(A.canonicalKey(), B.canonicalKey());
+        assertEquals(A.positionKey(A.orientation()),
+                     B.positionKey(B.orientation()));
+        Symmetry symmetry = Symmetry.forSize(4);
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            for (int n = 0; n < 16; n += 1) {
+                assertEquals(n, symmetry.preimage(t, symmetry.image(t, n)));
+                assertEquals(A.neighbors(n),
+                             A.neighbors(symmetry.image(t, n)));
+            }
+        }
+        B.addSpot(BLUE, 1, 1);
+        assertNotEquals(A.canonicalKey(), B.canonicalKey());
+    }
+
+    @Test
+    public void testAdjacency() {
+        for (int N = 2; N <= 10; N += 1) {
+            Adjacency adj = Adjacency.forSize(N);
+            assertSame(adj, Adjacency.forSize(N));
+            Board B = new MutableBoard(N);
+            for (int n = 0; n < N * N; n += 1) {
+                int r = B.row(n), c = B.col(n);
+                assertEquals(B.neighbors(r, c), adj.count(n));
+                assertEquals(B.neighbors(r, c), B.neighbors(n));
+                assertEquals(adj.count(n), adj.first(n + 1) - adj.first(n));
+                for (int j = adj.first(n); j < adj.first(n + 1); j += 1) {
+                    int m = adj.neighbor(j);
+                    int dist = Math.abs(B.row(m) - r) + Math.abs(B.col(m) - c);
+                    assertEquals(1, dist);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBoard() {
+        int N = Defaults.MAX_BOARD_SIZE;
+        Board B = new MutableBoard(N);
+        for (int k = 0; k < 4; k += 1) {
+            B.addSpot(B.whoseMove(), 1, 1);
+            B.addSpot(B.whoseMove(), N, N);
+        }
+        assertEquals(N * N + 8, B.numPieces());
+        assertEquals(3, B.numOfSide(RED));
+        assertEquals(3, B.numOfSide(BLUE));
+        String[] lines = B.toString().split("\n");
+        assertEquals(N + 2, lines.length);
+        assertEquals("    1r 3r", lines[1].substring(0, 9));
+        assertEquals(4 + 3 * N - 1, lines[N].length());
+        Board C = new MutableBoard(B);
+        assertEquals(B, C);
+        assertEquals(B.toDisplayString(), C.toDisplayString());
+    }
+
     /** Checks that B conforms to the description given by CONTENTS.
      *  CONTENTS should be a sequence of groups of 4 items:
      *  r, c, n, s, where r and c are row and column number of a square of B,
@@ -0,0 +1,129 @@
+package jump61;
+
+/** The overfull squares awaiting an explosion while one move is
+ *  resolved.  Explosions happen in passes.  Within a pass, squares
+ *  explode in increasing square-number order, as though found by a
+ *  row-by-row sweep of the board; a square that goes over capacity
+ *  behind the point the sweep has reached (or that is still overfull
+ *  after exploding) waits for the next pass.  This reproduces exactly
+ *  the order of explosions of repeated full-board sweeps, while only
+ *  ever looking at squares that have actually gone over capacity.
+ *  @author Dasheng Chen
+ */
+class CascadeQueue {
+
+    /** A queue able to hold each of the NUMSQUARES squares of a
+     *  board. */
+    CascadeQueue(int numSquares) {
+        _pass = new int[numSquares];
+        _inPass = new boolean[numSquares];
+        _later = new int[numSquares];
+        _inLater = new boolean[numSquares];
+    }
+
+    /** Return the number of squares on boards I can serve. */
+    int numSquares() {
+        return _pass.length;
+    }
+
+    /** Record that square #N has gone over capacity while square
+     *  #CURSOR was exploding.  Use a CURSOR not less than N (such as
+     *  numSquares()) for squares that are to wait for the next pass. */
+    void add(int n, int cursor) {
+        if (n > cursor) {
+            if (!_inPass[n]) {
+                _inPass[n] = true;
+                push(n);
+            }
+        } else if (!_inLater[n]) {
+            _inLater[n] = true;
+            _later[_laterSize] = n;
+            _laterSize += 1;
+        }
+    }
+
+    /** Return true iff the current pass has more squares to explode. */
+    boolean hasNext() {
+        return _passSize > 0;
+    }
+
+    /** Remove and return the lowest-numbered square remaining in the
+     *  current pass.  Assumes hasNext(). */
+    int next() {
+        int n = _pass[0];
+        _passSize -= 1;
+        if (_passSize > 0) {
+            siftDown(_pass[_passSize]);
+        }
+        _inPass[n] = false;
+        return n;
+    }
+
+    /** Begin a new pass containing all squares waiting for it.  Returns
+     *  true iff there are any. */
+    boolean startPass() {
+        for (int k = 0; k < _laterSize; k += 1) {
+            int n = _later[k];
+            _inLater[n] = false;
+            if (!_inPass[n]) {
+                _inPass[n] = true;
+                push(n);
+            }
+        }
+        _laterSize = 0;
+        return _passSize > 0;
+    }
+
+    /** Discard all waiting squares. */
+    void clear() {
+        for (int k = 0; k < _passSize; k += 1) {
+            _inPass[_pass[k]] = false;
+        }
+        for (int k = 0; k < _laterSize; k += 1) {
+            _inLater[_later[k]] = false;
+        }
+        _passSize = _laterSize = 0;
+    }
+
+    /** Add N to the heap of squares in the current pass. */
+    private void push(int n) {
+        int k = _passSize;
+        _passSize += 1;
+        while (k > 0 && _pass[(k - 1) / 2] > n) {
+            _pass[k] = _pass[(k - 1) / 2];
+            k = (k - 1) / 2;
+        }
+        _pass[k] = n;
+    }
+
+    /** Place N, which replaces the root of the heap of squares in the
+     *  current pass, in its proper position. */
+    private void siftDown(int n) {
+        int k = 0;
+        while (2 * k + 1 < _passSize) {
+            int child = 2 * k + 1;
+            if (child + 1 < _passSize && _pass[child + 1] < _pass[child]) {
+                child += 1;
+            }
+            if (_pass[child] >= n) {
+                break;
+            }
+            _pass[k] = _pass[child];
+            k = child;
+        }
+        _pass[k] = n;
+    }
+
+    /** Binary min-heap of the squares in the current pass. */
+    private final int[] _pass;
+    /** Number of squares in _pass. */
+    private int _passSize;
+    /** _inPass[i] is true iff square #i is in _pass. */
+    private final boolean[] _inPass;
+    /** Squares waiting for the next pass, in no particular order. */
+    private final int[] _later;
+    /** Number of squares in _later. */
+    private int _laterSize;
+    /** _inLater[i] is true iff square #i is in _later. */
+    private final boolean[] _inLater;
+}
@@ -50,6 +50,16 @@ class ConstantBoard extends Board {
         return _board.numOfSide(color);
     }
 
+    @Override
+    long positionKey() {
+        return _board.positionKey();
+    }
+
+    @Override
+    long positionKey(int t) {
+        return _board.positionKey(t);
+    }
+
     @Override
     public boolean equals(Object obj) {
         return _board.equals(obj);
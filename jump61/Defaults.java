@@ -12,6 +12,23 @@ class Defaults {
     static final int BOARD_SIZE = 6;
 
     /** Maximum number of squares on the side of a game board. */
-    static final int MAX_BOARD_SIZE = 10;
+    static final int MAX_BOARD_SIZE = 128;
+
+    /** Default time budget per automated move in milliseconds (0 for
+     *  fixed-depth searches). */
+    static final long MOVE_TIME = 0;
+
+    /** Log of the default number of transposition-table entries. */
+    static final int TABLE_LOG_SIZE = 20;
+
+    /** Default directory holding tablebases (see Tablebase). */
+    static final String TABLEBASE_DIR = "tablebases";
+
+    /** Default number of playouts per move of a Monte Carlo player. */
+    static final long PLAYOUTS = 10000;
+
+    /** Maximum number of threads among which automated players may
+     *  divide a search. */
+    static final int MAX_THREADS = 64;
 
 }
@@ -1,12 +1,15 @@
 package jump61;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
 import java.io.PrintWriter;
 import java.util.InputMismatchException;
-import java.util.Scanner;
 import java.util.Random;
 import java.util.Observable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
 
 import static jump61.Side.*;
 import static jump61.GameException.error;
@@ -19,27 +22,52 @@ class Game extends Observable {
     /** Name of resource containing help message. */
     private static final String HELP = "jump61/Help.txt";
 
+    /** Format of the names of tablebase files, given the board size. */
+    private static final String TABLEBASE_NAME = "jump61-%d.tb";
+
     /** A list of all commands. */
     private static final String[] COMMAND_NAMES = {
         "auto", "clear", "dump", "help", "manual",
-        "quit", "seed", "set", "size", "start", "verbose", "quiet", "new"
+        "quit", "seed", "set", "size", "start", "verbose", "quiet", "new",
+        "table", "time", "threads", "playouts", "ponder",
+        "tablebases", "stats", "record"
     };
 
+    /** Pattern matching color (player) names. */
+    private static final Pattern SIDE_NAME =
+        Pattern.compile("[rR][eE][dD]|[Bb][Ll][Uu][Ee]");
+    /** Pattern matching engine names. */
+    private static final Pattern ENGINE_NAME = Pattern.compile("[A-Za-z]+");
+    /** Pattern matching the colors given to the 'set' command. */
+    private static final Pattern SPOT_COLOR = Pattern.compile("[brBR]");
+    /** Pattern matching the arguments of switches such as 'ponder'. */
+    private static final Pattern ON_OFF = Pattern.compile("(?i)on|off");
+
     /** A new Game that takes command/move input from INPUT, prints
      *  normal output on OUTPUT, prints prompts for input on PROMPTS,
      *  and prints error messages on ERROROUTPUT. The Game now "owns"
      *  INPUT, PROMPTS, OUTPUT, and ERROROUTPUT, and is responsible for
      *  closing them when its play method returns. */
     Game(Reader input, Writer prompts, Writer output, Writer errorOutput) {
+        this(input, prompts, output, errorOutput, false);
+    }
+
+    /** A new Game as for Game(INPUT, PROMPTS, OUTPUT, ERROROUTPUT), which
+     *  runs INPUT as a script if BATCH: it prints no prompts, and
+     *  flushes OUTPUT and ERROROUTPUT only after 'dump' commands and at
+     *  the end of the session, rather than after every line.  Otherwise,
+     *  its output is the same. */
+    Game(Reader input, Writer prompts, Writer output, Writer errorOutput,
+         boolean batch) {
         _exit = -1;
         _verbose = false;
+        _batch = batch;
         _board = new MutableBoard(Defaults.BOARD_SIZE);
         _readonlyBoard = new ConstantBoard(_board);
         _prompter = new PrintWriter(prompts, true);
-        _inp = new Scanner(input);
-        _inp.useDelimiter("\\p{Blank}*(?=[\r\n])|(?<=\n)|\\p{Blank}+");
-        _out = new PrintWriter(output, true);
-        _err = new PrintWriter(errorOutput, true);
+        _inp = new Tokenizer(input);
+        _out = new PrintWriter(output, !batch);
+        _err = new PrintWriter(errorOutput, !batch);
         setPlayer(RED, new HumanPlayer(this, RED));
         setPlayer(BLUE, new AI(this, BLUE));
     }
@@ -50,6 +78,65 @@ class Game extends Observable {
         return _readonlyBoard;
     }
 
+    /** Returns the transposition table shared by automated players in
+     *  this session.  It is created when first needed, so that sessions
+     *  without automated players take no space for it. */
+    TranspositionTable getTable() {
+        if (_table == null) {
+            _table = new TranspositionTable(_tableLogSize);
+        }
+        return _table;
+    }
+
+    /** Returns the time budget for each move of an automated player in
+     *  milliseconds, or 0 if they are to search to a fixed depth. */
+    long getMoveTime() {
+        return _moveTime;
+    }
+
+    /** Returns the tablebase for boards of size SIZE from the current
+     *  tablebase directory, or null if there is none.  Reports an error
+     *  (once) if the directory contains a damaged one. */
+    Tablebase getTablebase(int size) {
+        if (size > Tablebase.MAX_SIZE) {
+            return null;
+        }
+        if (!_tablebaseLoaded[size]) {
+            _tablebaseLoaded[size] = true;
+            File file = new File(_tablebaseDir,
+                                 String.format(TABLEBASE_NAME, size));
+            if (file.exists()) {
+                try {
+                    _tablebases[size] = new Tablebase(file);
+                } catch (IOException excp) {
+                    reportError("%s", excp.getMessage());
+                }
+            }
+        }
+        return _tablebases[size];
+    }
+
+    /** Returns the longest an automated player may search for its
+     *  current move in milliseconds, as given by the session's search
+     *  scheduler, or 0 if there is no such limit.  Players also keep to
+     *  their own limits. */
+    long getTimeSlice() {
+        return _timeSlice;
+    }
+
+    /** Returns the number of playouts allowed for each move of a Monte
+     *  Carlo player, or 0 if they are limited only by time. */
+    long getPlayouts() {
+        return _playouts;
+    }
+
+    /** Returns the pool of threads among which automated players divide
+     *  their searches, or null if they are to search with a single
+     *  thread. */
+    ForkJoinPool getSearchPool() {
+        return _searchPool;
+    }
+
     /** Return true iff there is a game in progress. */
     boolean gameInProgress() {
         return _playing;
@@ -57,40 +144,88 @@ class Game extends Observable {
 
     /** Play a session of Jump61.  This may include multiple games,
      *  and proceeds until the user exits.  Returns an exit code: 0 is
-     *  normal; any positive quantity indicates an error.  */
+     *  normal; any positive quantity indicates an error.  The session's
+     *  streams are closed at the end, or only flushed if it ends with
+     *  an exception, so that they remain open to report it.  */
     int play() {
-        _out.println("Welcome to " + Defaults.VERSION);
-        _out.flush();
-        _board.clear(Defaults.BOARD_SIZE);
-        while (promptForNext()) {
-            readExecuteCommand();
-            while (gameInProgress()) {
-                Side color = _board.whoseMove();
-                Player player = getPlayer(color);
-                try {
-                    player.makeMove();
-                    checkForWin();
-                } catch (GameException e) {
-                    reportError(e.getMessage());
+        boolean ended = false;
+        try {
+            _out.println("Welcome to " + Defaults.VERSION);
+            _out.flush();
+            _board.clear(Defaults.BOARD_SIZE);
+            while (promptForNext()) {
+                readExecuteCommand();
+                while (gameInProgress()) {
+                    Side color = _board.whoseMove();
+                    Player player = getPlayer(color);
+                    try {
+                        if (_ponder && player instanceof HumanPlayer) {
+                            startPondering(getPlayer(color.opposite()));
+                        }
+                        if (_scheduler != null
+                            && !(player instanceof HumanPlayer)) {
+                            makeScheduledMove(player);
+                        } else {
+                            player.makeMove();
+                        }
+                        checkForWin();
+                    } catch (GameException e) {
+                        reportError("%s", e.getMessage());
+                    } finally {
+                        stopPondering();
+                    }
+                }
+                if (_exit == 0) {
+                    break;
                 }
             }
-            if (_exit == 0) {
-                break;
+            _exit = 0;
+            endRecord();
+            ended = true;
+        } finally {
+            closeRecorder();
+            if (_searchPool != null) {
+                _searchPool.shutdown();
+                _searchPool = null;
+            }
+            if (ended) {
+                _prompter.close();
+                _out.close();
+                _err.close();
+            } else {
+                _prompter.flush();
+                _out.flush();
+                _err.flush();
             }
         }
-        _exit = 0;
-        _prompter.close();
-        _out.close();
-        _err.close();
         return _exit;
     }
 
+    /** Have automated PLAYER make its move once _scheduler admits it,
+     *  within the time slice it is given.  The move is interactive if
+     *  PLAYER's opponent is a human, and background otherwise. */
+    private void makeScheduledMove(Player player) {
+        Side opponent = player.getSide().opposite();
+        SearchScheduler.Priority priority =
+            getPlayer(opponent) instanceof HumanPlayer
+            ? SearchScheduler.Priority.INTERACTIVE
+            : SearchScheduler.Priority.BACKGROUND;
+        _timeSlice = _scheduler.acquire(priority);
+        try {
+            player.makeMove();
+        } finally {
+            _timeSlice = 0;
+            _scheduler.release();
+        }
+    }
+
     /** Get a move from my input and place its row and column in
      *  MOVE.  Returns true if this is successful, false if game stops
      *  or ends first. */
     boolean getMove(int[] move) {
         while (_playing && _move[0] == 0) {
             if (promptForNext()) {
+                stopPondering();
                 readExecuteCommand();
             } else {
                 _exit = 0;
@@ -107,10 +242,27 @@ class Game extends Observable {
         }
     }
 
+    /** Have PLAYER ponder until the next call to stopPondering. */
+    private void startPondering(Player player) {
+        _ponderer = player;
+        player.startPondering();
+    }
+
+    /** Stop the pondering of the player, if any, that is pondering. */
+    private void stopPondering() {
+        if (_ponderer != null) {
+            _ponderer.stopPondering();
+            _ponderer = null;
+        }
+    }
+
     /** Add a spot to R C, if legal to do so. */
     void makeMove(int r, int c) {
         if (_board.isLegal(_board.whoseMove(), r, c)) {
             _board.addSpot(_board.whoseMove(), r, c);
+            if (_record != null) {
+                _record.move(_board.sqNum(r, c));
+            }
             if (_verbose) {
                 printBoard();
             }
@@ -122,6 +274,9 @@ class Game extends Observable {
     /** Add a spot to square #N, if legal to do so. */
     void makeMove(int n) {
         _board.addSpot(_board.whoseMove(), _board.row(n), _board.col(n));
+        if (_record != null) {
+            _record.move(n);
+        }
     }
 
     /** Report a move by PLAYER to ROW COL. */
@@ -129,6 +284,31 @@ class Game extends Observable {
         message("%s moves %d %d.%n", player.toCapitalizedString(), row, col);
     }
 
+    /** Report STATS, the statistics of the search for a move by PLAYER,
+     *  as a machine-readable line, if such reports are on (see the
+     *  'stats' command). */
+    void reportStats(Side player, SearchStats stats) {
+        if (_statsRecords && stats != null) {
+            _out.printf("stats player=%s %s%n", player, stats.toRecord());
+        }
+    }
+
+    /** Print the statistics of the last search of each player who has
+     *  made one. */
+    private void printStats() {
+        boolean any = false;
+        for (Side color : new Side[] { RED, BLUE }) {
+            SearchStats stats = getPlayer(color).searchStats();
+            if (stats != null) {
+                _out.printf("%s: %s%n", color.toCapitalizedString(), stats);
+                any = true;
+            }
+        }
+        if (!any) {
+            _out.println("No searches yet.");
+        }
+    }
+
     /** Return a random integer in the range [0 .. N), uniformly
      *  distributed.  Requires N > 0. */
     int randInt(int n) {
@@ -146,6 +326,7 @@ class Game extends Observable {
     private void checkForWin() {
         if (_board.getWinner() != null) {
             _playing = false;
+            endRecord();
             announceWinner();
             announce();
         }
@@ -156,9 +337,20 @@ class Game extends Observable {
         _out.printf("%s wins.%n", _board.getWinner().toCapitalizedString());
     }
 
-    /** Make the player of COLOR an AI for subsequent moves. */
-    private void setAuto(Side color) {
-        setPlayer(color, new AI(this, color));
+    /** Make the player of COLOR an automated player for subsequent
+     *  moves, using the engine named ENGINE: "minimax" for an AI, and
+     *  "mcts" for an MCTSPlayer. */
+    private void setAuto(Side color, String engine) {
+        switch (engine.toLowerCase()) {
+        case "minimax":
+            setPlayer(color, new AI(this, color));
+            break;
+        case "mcts":
+            setPlayer(color, new MCTSPlayer(this, color));
+            break;
+        default:
+            throw error("unknown engine: '%s'", engine);
+        }
     }
 
     /** Make the player of COLOR take manual input from the user for
@@ -182,6 +374,7 @@ class Game extends Observable {
      *  state. */
     void clear() {
         _playing = false;
+        endRecord();
         _move[0] = 0;
         _move[1] = 0;
         _board.clear(_board.size());
@@ -190,6 +383,10 @@ class Game extends Observable {
     /** Print the current board using standard board-dump format. */
     private void dump() {
         _out.println(_board);
+        if (_batch) {
+            _out.flush();
+            _err.flush();
+        }
     }
 
     /** Print a board with row/column numbers. */
@@ -202,9 +399,160 @@ class Game extends Observable {
         Main.printHelpResource(HELP, _out);
     }
 
+    /** Replace the transposition table of automated players with an empty
+     *  one having 2**LOGSIZE entries (none if LOGSIZE is 0). */
+    void setTableSize(int logSize) {
+        if (logSize < 0 || logSize > _maxTableLogSize) {
+            throw error("Requires 0 <= N <= %d.", _maxTableLogSize);
+        }
+        _tableLogSize = logSize;
+        _table = null;
+    }
+
+    /** Give automated players a budget of MILLIS milliseconds per move,
+     *  or return them to fixed-depth searches if MILLIS is 0. */
+    void setMoveTime(long millis) {
+        if (millis < 0) {
+            throw error("time budget must be non-negative");
+        }
+        _moveTime = millis;
+    }
+
+    /** Let automated players divide their searches among NUM threads.
+     *  Requires 1 <= NUM <= Defaults.MAX_THREADS, or NUM = 1 if I am
+     *  restricted. */
+    void setThreads(int num) {
+        int limit = _restricted ? 1 : Defaults.MAX_THREADS;
+        if (num < 1 || num > limit) {
+            throw error("Requires 1 <= N <= %d.", limit);
+        }
+        if (_searchPool != null) {
+            _searchPool.shutdown();
+        }
+        _searchPool = num == 1 ? null : new ForkJoinPool(num);
+    }
+
+    /** Have each move of an automated player wait to be admitted by
+     *  SCHEDULER, which may be shared with other sessions, and search no
+     *  longer than the time slice it gives.  Pondering is not
+     *  scheduled (see restrict).  SCHEDULER may be null, for no
+     *  scheduling. */
+    void setScheduler(SearchScheduler scheduler) {
+        _scheduler = scheduler;
+    }
+
+    /** Confine me to what is safe for one of many sessions sharing a
+     *  machine: transposition tables of at most 2**MAXLOGSIZE entries
+     *  (shrinking mine if need be), single-threaded searches, no
+     *  pondering, which would search outside any scheduler, and no
+     *  'record' or 'tablebases', which would open files named by the
+     *  user.  Whoever restricts me may still record games with
+     *  setRecorder. */
+    void restrict(int maxLogSize) {
+        _restricted = true;
+        _maxTableLogSize = maxLogSize;
+        if (_tableLogSize > maxLogSize) {
+            setTableSize(maxLogSize);
+        }
+        setThreads(1);
+        _ponder = false;
+    }
+
+    /** Take tablebases from the directory named DIR. */
+    private void setTablebaseDir(String dir) {
+        _tablebaseDir = new File(dir);
+        _tablebases = new Tablebase[Tablebase.MAX_SIZE + 1];
+        _tablebaseLoaded = new boolean[Tablebase.MAX_SIZE + 1];
+    }
+
+    /** Allow each move of a Monte Carlo player NUM playouts, or as many
+     *  as time allows if NUM is 0. */
+    private void setPlayouts(long num) {
+        if (num < 0) {
+            throw error("playout budget must be non-negative");
+        }
+        _playouts = num;
+    }
+
     /** Seed the random-number generator with SEED. */
     private void setSeed(long seed) {
         _random.setSeed(seed);
+        _seed = seed;
+        _seeded = true;
+    }
+
+    /** Record each game from now on, as a GameRecordWriter does, to the
+     *  file named NAME (appending to it), or if NAME is "off", stop
+     *  recording games. */
+    private void setRecordFile(String name) {
+        endRecord();
+        closeRecorder();
+        if (!name.equalsIgnoreCase("off")) {
+            try {
+                setRecorder(GameRecordWriter.open(new File(name)));
+            } catch (IOException excp) {
+                throw error("cannot record games in %s: %s", name,
+                            excp.getMessage());
+            }
+            _ownRecorder = true;
+        }
+    }
+
+    /** Record each game started from now on with RECORDER, which may be
+     *  shared with other sessions, and which the caller must close.
+     *  RECORDER may be null, for no recording.  A game suspended by
+     *  changing players (see 'auto' and 'manual') and then restarted is
+     *  recorded as one. */
+    void setRecorder(GameRecordWriter recorder) {
+        endRecord();
+        _recorder = recorder;
+        _ownRecorder = false;
+    }
+
+    /** Write the record of the current game, if one is being kept,
+     *  noting whether the board is won.  Reports an error if it cannot
+     *  be written. */
+    private void endRecord() {
+        if (_record == null) {
+            return;
+        }
+        int[] engines = {
+            engineCode(getPlayer(RED)), engineCode(getPlayer(BLUE))
+        };
+        _record.end(_board.getWinner(), engines, _moveTime, _playouts,
+                    _tableLogSize, _searchPool == null ? 1
+                    : _searchPool.getParallelism(), _seeded, _seed);
+        try {
+            _recorder.write(_record);
+        } catch (IOException excp) {
+            reportError("cannot write game record: %s", excp.getMessage());
+        }
+        _record = null;
+    }
+
+    /** Close the writer of game records, if I opened it. */
+    private void closeRecorder() {
+        if (_ownRecorder) {
+            try {
+                _recorder.close();
+            } catch (IOException excp) {
+                reportError("cannot close game records: %s",
+                            excp.getMessage());
+            }
+        }
+        _recorder = null;
+        _ownRecorder = false;
+    }
+
+    /** Return the engine code of PLAYER, as for GameRecordWriter. */
+    private static int engineCode(Player player) {
+        if (player instanceof AI) {
+            return GameRecordWriter.MINIMAX;
+        } else if (player instanceof MCTSPlayer) {
+            return GameRecordWriter.MCTS;
+        } else {
+            return GameRecordWriter.HUMAN;
+        }
     }
 
     /** Place SPOTS spots on square R:C and color the square red or
@@ -219,6 +567,7 @@ class Game extends Observable {
                 spots, r, c);
         }
         _playing = false;
+        endRecord();
         if (spots == 0) {
             _board.set(r, c, 1, WHITE);
         } else {
@@ -232,16 +581,17 @@ class Game extends Observable {
     }
 
     /** Stop any current game and set the board to an empty N x N board
-     *  with numMoves() == 0.  Requires 2 <= N <= 10. */
+     *  with numMoves() == 0.  Requires 2 <= N <= Defaults.MAX_BOARD_SIZE. */
     private void setSize(int n) {
-        if (n >= 2 && n <= 10) {
+        if (n >= 2 && n <= Defaults.MAX_BOARD_SIZE) {
             _playing = false;
+            endRecord();
             _move[0] = 0;
             _move[1] = 0;
             _board.clear(n);
             announce();
         } else {
-            throw error("Requires 2 <= N <= 10.");
+            throw error("Requires 2 <= N <= %d.", Defaults.MAX_BOARD_SIZE);
         }
     }
 
@@ -249,7 +599,10 @@ class Game extends Observable {
      *  immediately print a win message and end the game. */
     private void restartGame() {
         _playing = true;
-        System.out.println("start game");
+        if (_recorder != null && _record == null) {
+            _record = _recorder.begin(_board);
+        }
+        _out.println("start game");
         checkForWin();
         announce();
     }
@@ -267,7 +620,27 @@ class Game extends Observable {
     /** Returns a color (player) name from _inp: either RED or BLUE.
      *  Throws an exception if not present. */
     private Side readSide() {
-        return Side.parseSide(_inp.next("[rR][eE][dD]|[Bb][Ll][Uu][Ee]"));
+        return Side.parseSide(_inp.next(SIDE_NAME));
+    }
+
+    /** Returns the name of an engine for an automated player from _inp,
+     *  if present (in which case it is a word), and otherwise
+     *  "minimax". */
+    private String readEngine() {
+        if (_inp.hasNext(ENGINE_NAME)) {
+            return _inp.next();
+        }
+        return "minimax";
+    }
+
+    /** Returns the file name argument from _inp of command CMND, which
+     *  is an error if I am restricted (see restrict). */
+    private String readFileName(String cmnd) {
+        String name = _inp.next();
+        if (_restricted) {
+            throw error("'%s' is not allowed here", cmnd);
+        }
+        return name;
     }
 
     /** Eat the annoying newline. */
@@ -280,27 +653,28 @@ class Game extends Observable {
     private void readExecuteCommand() {
         String command = "";
         try {
-            if (_inp.hasNext(" ")) {
-                _inp.next();
-            }
             String str = _inp.next();
-            command = canonicalizeCommand(str);
-            String pattern = "\\d+";
-            if (command.matches(pattern) && !_playing) {
-                throw error("no game in progress");
-            } else if (command.matches(pattern) && _inp.hasNextInt()) {
-                int r = Integer.valueOf(command);
+            if (str.equals(" ")) {
+                str = _inp.next();
+            }
+            if (!isNumeral(str)) {
+                command = canonicalizeCommand(str);
+                executeCommand(command);
+            } else {
+                command = str;
+                if (!_playing) {
+                    throw error("no game in progress");
+                } else if (!_inp.hasNextInt()) {
+                    throw error("syntax error in '<move>' command");
+                }
+                int r = Integer.parseInt(str);
                 int c = _inp.nextInt();
                 saveMove(r, c);
-            } else if (command.matches(pattern) && !_inp.hasNextInt()) {
-                throw error("syntax error in '<move>' command");
-            } else {
-                executeCommand(command);
             }
         } catch (InputMismatchException e) {
             reportError("syntax error in '%s' command", command);
         } catch (GameException e) {
-            reportError(e.getMessage());
+            reportError("%s", e.getMessage());
         } finally {
             if (!(command.equals("\n") || command.equals("\r\n"))) {
                 eatNewline();
@@ -308,6 +682,16 @@ class Game extends Observable {
         }
     }
 
+    /** Return true iff STR consists entirely of (ASCII) digits. */
+    private static boolean isNumeral(String str) {
+        for (int i = 0; i < str.length(); i += 1) {
+            if (str.charAt(i) < '0' || str.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return str.length() > 0;
+    }
+
     /** Return the full, lower-case command name that uniquely fits
      *  COMMAND.  COMMAND may be any prefix of a valid command name,
      *  as long as that name is unique.  If the name is not unique or
@@ -338,16 +722,17 @@ class Game extends Observable {
         }
     }
 
-    /** Gather arguments and execute command CMND.  Throws GameException
-     *  on errors. */
+    /** Gather arguments and execute command CMND, a full command name as
+     *  returned by canonicalizeCommand.  Throws GameException on
+     *  errors. */
     private void executeCommand(String cmnd) {
-        switch (canonicalizeCommand(cmnd)) {
+        switch (cmnd) {
         case "\n": case "\r\n":
             return;
         case "#": case "":
             break;
         case "auto":
-            setAuto(readSide());
+            setAuto(readSide(), readEngine());
             break;
         case "clear":
             clear();
@@ -364,13 +749,14 @@ class Game extends Observable {
         case "quit":
             _exit = 0;
             _playing = false;
+            endRecord();
             break;
         case "seed":
             setSeed(_inp.nextLong());
             break;
         case "set":
             setSpots(_inp.nextInt(), _inp.nextInt(), _inp.nextInt(),
-                     _inp.next("[brBR]"));
+                     _inp.next(SPOT_COLOR));
             break;
         case "size":
             setSize(_inp.nextInt());
@@ -388,6 +774,38 @@ class Game extends Observable {
         case "quiet":
             _verbose = false;
             break;
+        case "table":
+            setTableSize(_inp.nextInt());
+            break;
+        case "time":
+            setMoveTime(_inp.nextLong());
+            break;
+        case "threads":
+            setThreads(_inp.nextInt());
+            break;
+        case "playouts":
+            setPlayouts(_inp.nextLong());
+            break;
+        case "tablebases":
+            setTablebaseDir(readFileName(cmnd));
+            break;
+        case "record":
+            setRecordFile(readFileName(cmnd));
+            break;
+        case "ponder":
+            _ponder = _inp.next(ON_OFF).equalsIgnoreCase("on");
+            if (_ponder && _restricted) {
+                _ponder = false;
+                throw error("pondering is not allowed here");
+            }
+            break;
+        case "stats":
+            if (_inp.hasNext(ON_OFF)) {
+                _statsRecords = _inp.next().equalsIgnoreCase("on");
+            } else {
+                printStats();
+            }
+            break;
         default:
             throw error("bad command: '%s'", cmnd);
         }
@@ -396,11 +814,13 @@ class Game extends Observable {
     /** Print a prompt and wait for input. Returns true iff there is another
      *  token. */
     private boolean promptForNext() {
-        if (_playing) {
-            _prompter.print(_board.whoseMove());
+        if (!_batch) {
+            if (_playing) {
+                _prompter.print(_board.whoseMove());
+            }
+            _prompter.print("> ");
+            _prompter.flush();
         }
-        _prompter.print("> ");
-        _prompter.flush();
         return _inp.hasNext();
     }
 
@@ -420,9 +840,8 @@ class Game extends Observable {
 
     /** Writer on which to print prompts for input. */
     private final PrintWriter _prompter;
-    /** Scanner from current game input.  Initialized to return
-     *  newlines as tokens. */
-    private final Scanner _inp;
+    /** Tokens from current game input, including newlines. */
+    private final Tokenizer _inp;
     /** Outlet for responses to the user. */
     private final PrintWriter _out;
     /** Outlet for error responses to the user. */
@@ -433,8 +852,65 @@ class Game extends Observable {
     /** A readonly view of _board. */
     private final Board _readonlyBoard;
 
+    /** Transposition table shared by automated players, or null if not
+     *  yet created. */
+    private TranspositionTable _table;
+    /** Log of the number of entries in _table. */
+    private int _tableLogSize = Defaults.TABLE_LOG_SIZE;
+
+    /** Time budget per automated move (milliseconds), or 0 for
+     *  fixed-depth searches. */
+    private long _moveTime = Defaults.MOVE_TIME;
+
+    /** Directory holding tablebases. */
+    private File _tablebaseDir = new File(Defaults.TABLEBASE_DIR);
+    /** Tablebases from _tablebaseDir, indexed by board size (null where
+     *  absent or not yet loaded). */
+    private Tablebase[] _tablebases = new Tablebase[Tablebase.MAX_SIZE + 1];
+    /** _tablebaseLoaded[n] is true iff the tablebase for size n has been
+     *  looked for in _tablebaseDir. */
+    private boolean[] _tablebaseLoaded = new boolean[Tablebase.MAX_SIZE + 1];
+
+    /** True iff I am restricted (see restrict). */
+    private boolean _restricted;
+    /** Largest log2 size of transposition table allowed. */
+    private int _maxTableLogSize = TranspositionTable.MAX_LOG_SIZE;
+
+    /** True iff automated players ponder while a manual player is
+     *  deciding on a move. */
+    private boolean _ponder;
+    /** The player currently pondering, or null if none. */
+    private Player _ponderer;
+
+    /** Playout budget per move of a Monte Carlo player, or 0 for none. */
+    private long _playouts = Defaults.PLAYOUTS;
+
+    /** Pool of threads sharing the searches of automated players, or
+     *  null for single-threaded searches. */
+    private ForkJoinPool _searchPool;
+
+    /** Scheduler admitting the moves of automated players, or null if
+     *  they are not scheduled. */
+    private SearchScheduler _scheduler;
+    /** Time slice of the current automated move (milliseconds), or 0 if
+     *  none. */
+    private long _timeSlice;
+
     /** A pseudo-random number generator used by players as needed. */
     private final Random _random = new Random();
+    /** The last seed given to _random, if _seeded. */
+    private long _seed;
+    /** True iff _random has been given a seed. */
+    private boolean _seeded;
+
+    /** Writer of game records, or null if games are not recorded. */
+    private GameRecordWriter _recorder;
+    /** True iff _recorder was opened by the 'record' command, and is to
+     *  be closed by me. */
+    private boolean _ownRecorder;
+    /** Record of the current (or suspended) game, or null if none is
+     *  being kept. */
+    private GameRecordWriter.Record _record;
 
     /** True iff a game is currently in progress. */
     private boolean _playing;
@@ -442,8 +918,14 @@ class Game extends Observable {
      *  at the earliest possible point, returning _exit.  When negative,
      *  indicates that the session is not over. */
     private int _exit;
+    /** True iff input is run as a script (see Game(Reader, Writer,
+     *  Writer, Writer, boolean)). */
+    private final boolean _batch;
     /** When set to True, display the board after each move. */
     private boolean _verbose;
+    /** When set to True, report the statistics of each automated
+     *  player's search as a machine-readable line after its move. */
+    private boolean _statsRecords;
 
     /** Current players, indexed by color (RED, BLUE). */
     private final Player[] _players = new Player[Side.values().length];
@@ -23,9 +23,4 @@ class GameException extends RuntimeException {
         return new GameException(String.format(format, args));
     }
 
-    /** Returns an exception for AI timeout. */
-    static GameException timeOutAI() {
-        return new GameException();
-    }
-
 }
@@ -0,0 +1,354 @@
+package jump61;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static jump61.GameRecordWriter.*;
+
+/** Reads the records of games written by a GameRecordWriter, one at a
+ *  time, and replays them.  Each record is read whole into a buffer that
+ *  is reused for the next, and its moves are decoded from there as they
+ *  are replayed, so that reading a record allocates nothing in the
+ *  usual case, and replaying one allocates nothing per move.
+ *  @author Dasheng Chen
+ */
+class GameRecordReader implements Closeable {
+
+    /** Engine names, indexed by engine code. */
+    private static final String[] ENGINE_NAMES = {
+        "human", "minimax", "mcts"
+    };
+
+    /** Nanoseconds per second. */
+    private static final double NANOS = 1e9;
+
+    /** Replay the games recorded in the files named by ARGS, checking
+     *  that each recorded winner wins on replay, and print a line
+     *  describing each record if the first argument is --list, and in
+     *  any case the totals.  Exits with code 1 on errors. */
+    public static void main(String... args) {
+        boolean list = args.length > 0 && args[0].equals("--list");
+        if (args.length == (list ? 1 : 0)) {
+            System.err.println("Usage: java jump61.GameRecordReader"
+                               + " [ --list ] FILE...");
+            System.exit(1);
+        }
+        MutableBoard board = new MutableBoard(Defaults.BOARD_SIZE);
+        long games = 0, moves = 0;
+        long start = System.nanoTime();
+        for (int k = list ? 1 : 0; k < args.length; k += 1) {
+            try (GameRecordReader inp =
+                 new GameRecordReader(new FileInputStream(args[k]))) {
+                while (inp.next()) {
+                    inp.replay(board);
+                    games += 1;
+                    moves += inp.numMoves();
+                    if (list) {
+                        System.out.println(inp);
+                    }
+                }
+            } catch (IOException excp) {
+                System.err.printf("Error: %s: %s%n", args[k],
+                                  excp.getMessage());
+                System.exit(1);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / NANOS;
+        System.out.printf("%d games, %d moves replayed in %.2f s"
+                          + " (%.0f moves/s)%n",
+                          games, moves, seconds, moves / seconds);
+    }
+
+    /** A reader of the records on IN, which I own.  Throws IOException
+     *  if IN does not start as a stream of records should. */
+    GameRecordReader(InputStream in) throws IOException {
+        _in = new BufferedInputStream(in);
+        int magic = 0;
+        for (int k = 0; k < 4; k += 1) {
+            magic = (magic << Byte.SIZE) | readByte(true);
+        }
+        if (magic != MAGIC) {
+            throw new IOException("not a file of game records");
+        }
+        if (readByte(true) != VERSION) {
+            throw new IOException("unknown version of game records");
+        }
+    }
+
+    /** Read the next record, returning false if there are no more.
+     *  Its header is then available from size() etc., and its moves
+     *  from nextMove() or replay. */
+    boolean next() throws IOException {
+        int first = readByte(false);
+        if (first < 0) {
+            return false;
+        }
+        long length = first & LOW_BITS;
+        for (int shift = BITS; (first & MORE) != 0; shift += BITS) {
+            if (shift >= Integer.SIZE) {
+                throw new IOException("bad record length");
+            }
+            first = readByte(true);
+            length |= (first & LOW_BITS) << shift;
+        }
+        if (length > _buffer.length) {
+            _buffer = new byte[(int) Math.max(length, 2 * _buffer.length)];
+        }
+        _length = (int) length;
+        for (int k = 0; k < _length; ) {
+            int n = _in.read(_buffer, k, _length - k);
+            if (n < 0) {
+                throw new EOFException("truncated game record");
+            }
+            k += n;
+        }
+        _pos = 0;
+        try {
+            readHeader();
+        } catch (ArrayIndexOutOfBoundsException excp) {
+            throw new IOException("malformed game record");
+        }
+        return true;
+    }
+
+    /** Decode the header of the record in _buffer. */
+    private void readHeader() throws IOException {
+        _size = (int) varint();
+        int flags = _buffer[_pos];
+        _winner = side(_buffer[_pos + 1]);
+        _engines[0] = engineCode(_buffer[_pos + 2]);
+        _engines[1] = engineCode(_buffer[_pos + 3]);
+        _pos += 4;
+        _moveTime = varint();
+        _playouts = varint();
+        _tableLogSize = _buffer[_pos];
+        _pos += 1;
+        _threads = (int) varint();
+        _seeded = (flags & HAS_SEED) != 0;
+        if (_seeded) {
+            long zigzag = varint();
+            _seed = (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        if (_size < 2 || _size > Defaults.MAX_BOARD_SIZE) {
+            throw new IOException("bad board size in game record");
+        }
+        if ((flags & HAS_POSITION) != 0) {
+            _positionStart = _pos;
+            _pos += _size * _size;
+        } else {
+            _positionStart = -1;
+        }
+        _numMoves = (int) varint();
+        _movesLeft = _numMoves;
+        if (_pos > _length) {
+            throw new IOException("malformed game record");
+        }
+    }
+
+    /** Return the Side whose ordinal is CODE, as a winner (null for
+     *  WHITE). */
+    private static Side side(int code) throws IOException {
+        if (code == Side.RED.ordinal()) {
+            return Side.RED;
+        } else if (code == Side.BLUE.ordinal()) {
+            return Side.BLUE;
+        } else if (code == Side.WHITE.ordinal()) {
+            return null;
+        }
+        throw new IOException("bad side in game record");
+    }
+
+    /** Return CODE, checking that it is an engine code. */
+    private static int engineCode(int code) throws IOException {
+        if (code < 0 || code >= ENGINE_NAMES.length) {
+            throw new IOException("bad engine in game record");
+        }
+        return code;
+    }
+
+    /** Return the board size of the current record. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the winner of the current record's game, or null if it
+     *  was not finished. */
+    Side winner() {
+        return _winner;
+    }
+
+    /** Return the name of the engine playing COLOR (RED or BLUE) at the
+     *  end of the current record's game: "human", "minimax", or
+     *  "mcts". */
+    String engine(Side color) {
+        return ENGINE_NAMES[_engines[color == Side.RED ? 0 : 1]];
+    }
+
+    /** Return the time budget per automated move (milliseconds). */
+    long moveTime() {
+        return _moveTime;
+    }
+
+    /** Return the playout budget per Monte Carlo move. */
+    long playouts() {
+        return _playouts;
+    }
+
+    /** Return the log of the transposition-table size. */
+    int tableLogSize() {
+        return _tableLogSize;
+    }
+
+    /** Return the number of search threads. */
+    int threads() {
+        return _threads;
+    }
+
+    /** Return true iff the current record gives a seed. */
+    boolean seeded() {
+        return _seeded;
+    }
+
+    /** Return the seed of the current record, if seeded(). */
+    long seed() {
+        return _seed;
+    }
+
+    /** Return the number of moves in the current record. */
+    int numMoves() {
+        return _numMoves;
+    }
+
+    /** Set B to the starting position of the current record. */
+    void setUp(MutableBoard b) throws IOException {
+        b.clear(_size);
+        if (_positionStart >= 0) {
+            for (int n = 0; n < _size * _size; n += 1) {
+                int code = _buffer[_positionStart + n];
+                int spots = code % SPOTS;
+                if (code < 0 || code / SPOTS >= Side.values().length
+                    || spots < 1 || spots > Square.MAX_SPOTS) {
+                    throw new IOException("bad square in game record");
+                }
+                Side player = Side.values()[code / SPOTS];
+                if (player != Side.WHITE) {
+                    b.set(n, spots, player);
+                }
+            }
+        }
+    }
+
+    /** Return the square of the next move of the current record, or -1
+     *  if there are no more. */
+    int nextMove() throws IOException {
+        if (_movesLeft == 0) {
+            return -1;
+        }
+        _movesLeft -= 1;
+        try {
+            long n = varint() - 1;
+            if (n < 0 || n >= _size * _size) {
+                throw new IOException("bad move in game record");
+            }
+            return (int) n;
+        } catch (ArrayIndexOutOfBoundsException excp) {
+            throw new IOException("malformed game record");
+        }
+    }
+
+    /** Set B to the starting position of the current record, and make its
+     *  moves (those not yet read by nextMove) on B.  Throws IOException
+     *  if a move is illegal, or if a finished game does not end won by
+     *  the recorded winner. */
+    void replay(MutableBoard b) throws IOException {
+        setUp(b);
+        for (int n = nextMove(); n != -1; n = nextMove()) {
+            Side player = b.whoseMove();
+            if (b.getWinner() != null || !b.isLegal(player, n)) {
+                throw new IOException("illegal move in game record");
+            }
+            b.addSpot(player, n);
+        }
+        if (_winner != null && b.getWinner() != _winner) {
+            throw new IOException("game record has the wrong winner");
+        }
+    }
+
+    /** Return the unsigned varint at _pos in _buffer, advancing _pos past
+     *  it. */
+    private long varint() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += BITS) {
+            int b = _buffer[_pos];
+            _pos += 1;
+            result |= (b & LOW_BITS) << shift;
+            if ((b & MORE) == 0) {
+                if (_pos > _length) {
+                    throw new IOException("malformed game record");
+                }
+                return result;
+            }
+        }
+        throw new IOException("malformed game record");
+    }
+
+    /** Return the next byte of input, or -1 at the end of input, which
+     *  is an error if REQUIRED. */
+    private int readByte(boolean required) throws IOException {
+        int b = _in.read();
+        if (b < 0 && required) {
+            throw new EOFException("truncated game records");
+        }
+        return b;
+    }
+
+    /** Returns a one-line description of the current record. */
+    @Override
+    public String toString() {
+        return String.format("size=%d red=%s blue=%s winner=%s moves=%d"
+                             + " time=%d playouts=%d table=%d threads=%d"
+                             + "%s%s",
+                             _size, engine(Side.RED), engine(Side.BLUE),
+                             _winner == null ? "none" : _winner.toString(),
+                             _numMoves, _moveTime, _playouts, _tableLogSize,
+                             _threads, _seeded ? " seed=" + _seed : "",
+                             _positionStart >= 0 ? " position=set" : "");
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /** Initial size of _buffer. */
+    private static final int BUFFER_SIZE = 1024;
+
+    /** Source of records. */
+    private final InputStream _in;
+    /** The current record occupies _buffer[0 .. _length-1]. */
+    private byte[] _buffer = new byte[BUFFER_SIZE];
+    /** Length of the current record. */
+    private int _length;
+    /** Position of the next field to be decoded in _buffer. */
+    private int _pos;
+
+    /** Fields of the header of the current record. */
+    private int _size, _tableLogSize, _threads, _numMoves;
+    /** Fields of the header of the current record. */
+    private long _moveTime, _playouts, _seed;
+    /** True iff the current record gives a seed. */
+    private boolean _seeded;
+    /** Winner of the current record, or null. */
+    private Side _winner;
+    /** Engine codes of red and blue in the current record. */
+    private final int[] _engines = new int[2];
+    /** Position of the starting position in _buffer, or -1 if the game
+     *  starts from an empty board. */
+    private int _positionStart;
+    /** Number of moves of the current record not yet read. */
+    private int _movesLeft;
+}
@@ -0,0 +1,117 @@
+package jump61;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static jump61.Side.*;
+
+/** Unit tests of GameRecordWriters and GameRecordReaders.
+ *  @author Dasheng Chen
+ */
+public class GameRecordTest {
+
+    /** Return the records of the games played by SCRIPT, putting the
+     *  session's output in OUTPUT. */
+    private static byte[] record(String script, StringWriter output)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter recorder = new GameRecordWriter(bytes, false);
+        Game game = new Game(new StringReader(script), new StringWriter(),
+                             output, new StringWriter(), true);
+        game.setRecorder(recorder);
+        game.play();
+        recorder.close();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testVarints() {
+        byte[] bytes = new byte[GameRecordWriter.MAX_VARINT];
+        assertEquals(1, GameRecordWriter.putVarint(bytes, 0, 0));
+        assertEquals(1, GameRecordWriter.putVarint(bytes, 0, 127));
+        assertEquals(127, bytes[0]);
+        assertEquals(2, GameRecordWriter.putVarint(bytes, 0, 300));
+        assertEquals((byte) 0xac, bytes[0]);
+        assertEquals(2, bytes[1]);
+        assertEquals(GameRecordWriter.MAX_VARINT,
+                     GameRecordWriter.putVarint(bytes, 0, -1L));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        StringWriter output = new StringWriter();
+        byte[] bytes =
+            record("seed -7\nsize 4\nauto red\nauto blue mcts\nplayouts 50\n"
+                   + "start\ndump\nmanual red\nmanual blue\nclear\nstart\n"
+                   + "1 1\nauto blue\nstart\nset 4 4 2 b\nstart\nquit\n",
+                   output);
+        GameRecordReader inp =
+            new GameRecordReader(new ByteArrayInputStream(bytes));
+        MutableBoard b = new MutableBoard(2);
+        assertTrue(inp.next());
+        assertEquals(4, inp.size());
+        assertEquals("minimax", inp.engine(RED));
+        assertEquals("mcts", inp.engine(BLUE));
+        assertEquals(50, inp.playouts());
+        assertTrue(inp.seeded());
+        assertEquals(-7, inp.seed());
+        assertNotNull(inp.winner());
+        inp.replay(b);
+        assertEquals(inp.winner(), b.getWinner());
+        String dump = output.toString();
+        assertTrue(dump.contains(b.toString()));
+
+        assertTrue(inp.next());
+        assertEquals("human", inp.engine(RED));
+        assertEquals("minimax", inp.engine(BLUE));
+        assertNull(inp.winner());
+        assertEquals(2, inp.numMoves());
+        inp.setUp(b);
+        assertEquals(16, b.numOfSide(WHITE));
+        assertEquals(0, inp.nextMove());
+        assertTrue(inp.nextMove() > 0);
+        assertEquals(-1, inp.nextMove());
+
+        assertTrue(inp.next());
+        assertEquals(1, inp.numMoves());
+        inp.setUp(b);
+        assertEquals(2, b.get(4, 4).getSpots());
+        assertEquals(BLUE, b.get(4, 4).getSide());
+        assertEquals(RED, b.get(1, 1).getSide());
+        assertFalse(inp.next());
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        byte[] bytes = record("size 3\nauto red\nauto blue\nstart\nquit\n",
+                              new StringWriter());
+        byte[][] bad = {
+            Arrays.copyOf(bytes, 3),
+            Arrays.copyOf(bytes, bytes.length - 1),
+            bytes.clone(),
+            bytes.clone(),
+        };
+        bad[2][0] = 'X';
+        bad[3][bad[3].length - 1] = 99;
+        for (byte[] input : bad) {
+            try {
+                GameRecordReader inp =
+                    new GameRecordReader(new ByteArrayInputStream(input));
+                while (inp.next()) {
+                    inp.replay(new MutableBoard(2));
+                }
+                fail("expected IOException");
+            } catch (IOException excp) {
+                continue;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,227 @@
+package jump61;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/** Writes records of games in a compact binary form, appending each to
+ *  a stream as its game ends.  Several games (in different threads) may
+ *  share one writer.
+ *
+ *  The stream starts with MAGIC and VERSION (4 bytes and 1 byte), and
+ *  then holds any number of records, each an unsigned varint (7 bits
+ *  per byte, least significant first, high bit set on all but the last
+ *  byte) giving the length of the rest of the record, followed by these
+ *  fields, integers being varints unless noted:
+ *
+ *      size        The board size.
+ *      flags       1 byte: HAS_SEED | HAS_POSITION, as applicable.
+ *      winner      1 byte: the ordinal of the winning Side, or that of
+ *                  WHITE if the game was not finished.
+ *      engines     2 bytes: the engines (HUMAN, MINIMAX, or MCTS) of
+ *                  red and blue as of the end of the game.
+ *      time        The time budget per automated move (ms).
+ *      playouts    The playout budget per Monte Carlo move.
+ *      table       1 byte: log of the transposition-table size.
+ *      threads     The number of search threads.
+ *      seed        If HAS_SEED, the last seed given to the game, as a
+ *                  zigzag varint (0, -1, 1, -2, ... as 0, 1, 2, 3, ...).
+ *      position    If HAS_POSITION (the game started other than from an
+ *                  empty board), size * size bytes, one per square in
+ *                  order, each 16 * (ordinal of its Side) + its spots.
+ *      moves       The number of moves.
+ *      ...         1 + the number of the square of each move, in order.
+ *
+ *  A record for a 6 x 6 game of 40 moves thus takes about 55 bytes,
+ *  against some 5K for a dump of the board after every move.
+ *  @author Dasheng Chen
+ */
+class GameRecordWriter implements Closeable {
+
+    /** First 4 bytes of a stream of records ("J61R"). */
+    static final int MAGIC = 0x4a363152;
+    /** Version of the record format. */
+    static final int VERSION = 1;
+
+    /** Flag: the record gives the game's seed. */
+    static final int HAS_SEED = 1;
+    /** Flag: the record gives the starting position. */
+    static final int HAS_POSITION = 2;
+
+    /** Engine codes: a human player, a minimax AI, and a Monte Carlo
+     *  player. */
+    static final int HUMAN = 0, MINIMAX = 1, MCTS = 2;
+
+    /** A writer of records onto OUT, which I own, and which is empty or
+     *  positioned at the end of a stream of records iff APPENDING. */
+    GameRecordWriter(OutputStream out, boolean appending)
+        throws IOException {
+        _out = new BufferedOutputStream(out);
+        if (!appending) {
+            _out.write(MAGIC >>> 24);
+            _out.write(MAGIC >>> 16);
+            _out.write(MAGIC >>> 8);
+            _out.write(MAGIC);
+            _out.write(VERSION);
+            _out.flush();
+        }
+    }
+
+    /** Return a writer appending records to the file named FILE,
+     *  creating it if need be. */
+    static GameRecordWriter open(File file) throws IOException {
+        boolean appending = file.length() > 0;
+        return new GameRecordWriter(new FileOutputStream(file, true),
+                                    appending);
+    }
+
+    /** Return a new record of a game starting from the position on B. */
+    Record begin(Board b) {
+        return new Record(b);
+    }
+
+    /** Append RECORD to my stream, which is then flushed. */
+    synchronized void write(Record record) throws IOException {
+        int length = record._length;
+        writeVarint(length);
+        _out.write(record._bytes, 0, length);
+        _out.flush();
+    }
+
+    /** Append VALUE to my stream as an unsigned varint. */
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~LOW_BITS) != 0) {
+            _out.write((int) (value & LOW_BITS) | MORE);
+            value >>>= BITS;
+        }
+        _out.write((int) value);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        _out.close();
+    }
+
+    /** The record of one game.  Its moves are gathered as they are
+     *  played; the header, known only at the end, is then put in front of
+     *  them. */
+    static class Record {
+
+        /** A record of a game starting from the position on B. */
+        Record(Board b) {
+            int area = b.size() * b.size();
+            _bytes = new byte[INITIAL_MOVE_SPACE];
+            _size = b.size();
+            for (int n = 0; n < area; n += 1) {
+                Square sq = b.get(n);
+                if (sq.getSide() != Side.WHITE || sq.getSpots() != 1) {
+                    _position = new byte[area];
+                    break;
+                }
+            }
+            if (_position != null) {
+                for (int n = 0; n < area; n += 1) {
+                    Square sq = b.get(n);
+                    _position[n] = (byte) (sq.getSide().ordinal() * SPOTS
+                                           + sq.getSpots());
+                }
+            }
+        }
+
+        /** Add a move to square #N. */
+        void move(int n) {
+            if (_length + MAX_VARINT > _bytes.length) {
+                _bytes = Arrays.copyOf(_bytes, 2 * _bytes.length);
+            }
+            _length = putVarint(_bytes, _length, n + 1);
+            _moves += 1;
+        }
+
+        /** Complete the header: the game was won by WINNER (null if not
+         *  finished) with red and blue playing ENGINES (as HUMAN etc.).
+         *  Automated players had MOVETIME milliseconds, PLAYOUTS playouts,
+         *  a table of 2**TABLELOGSIZE entries, and THREADS threads per
+         *  move.  If SEEDED, the game's last seed was SEED.  No more
+         *  moves may be added. */
+        void end(Side winner, int[] engines, long moveTime, long playouts,
+                 int tableLogSize, int threads, boolean seeded, long seed) {
+            byte[] header = new byte[HEADER_SPACE + _size * _size];
+            int k = putVarint(header, 0, _size);
+            header[k] = (byte) ((seeded ? HAS_SEED : 0)
+                                | (_position != null ? HAS_POSITION : 0));
+            header[k + 1] = (byte) (winner == null ? Side.WHITE.ordinal()
+                                    : winner.ordinal());
+            header[k + 2] = (byte) engines[0];
+            header[k + 3] = (byte) engines[1];
+            k = putVarint(header, k + 4, moveTime);
+            k = putVarint(header, k, playouts);
+            header[k] = (byte) tableLogSize;
+            k = putVarint(header, k + 1, threads);
+            if (seeded) {
+                k = putVarint(header, k, (seed << 1) ^ (seed >> 63));
+            }
+            if (_position != null) {
+                System.arraycopy(_position, 0, header, k, _position.length);
+                k += _position.length;
+            }
+            k = putVarint(header, k, _moves);
+            byte[] bytes = new byte[k + _length];
+            System.arraycopy(header, 0, bytes, 0, k);
+            System.arraycopy(_bytes, 0, bytes, k, _length);
+            _bytes = bytes;
+            _length = bytes.length;
+        }
+
+        /** Return the number of moves recorded. */
+        int numMoves() {
+            return _moves;
+        }
+
+        /** Space reserved for the moves in a new record (bytes). */
+        private static final int INITIAL_MOVE_SPACE = 64;
+
+        /** Board size. */
+        private final int _size;
+        /** Starting position, if not the empty board, or null. */
+        private byte[] _position;
+        /** The moves, and once the record is ended, the header before
+         *  them. */
+        private byte[] _bytes;
+        /** Number of bytes of _bytes in use. */
+        private int _length;
+        /** Number of moves recorded. */
+        private int _moves;
+    }
+
+    /** Put VALUE into BYTES at K as an unsigned varint, returning the
+     *  index just after it. */
+    static int putVarint(byte[] bytes, int k, long value) {
+        while ((value & ~LOW_BITS) != 0) {
+            bytes[k] = (byte) ((value & LOW_BITS) | MORE);
+            k += 1;
+            value >>>= BITS;
+        }
+        bytes[k] = (byte) value;
+        return k + 1;
+    }
+
+    /** Number of value bits in each byte of a varint. */
+    static final int BITS = 7;
+    /** Mask for the value bits of a byte of a varint. */
+    static final long LOW_BITS = (1 << BITS) - 1;
+    /** Bit set in each byte of a varint but the last. */
+    static final int MORE = 1 << BITS;
+    /** Maximum length of a varint (bytes). */
+    static final int MAX_VARINT = 10;
+    /** Multiplier of the side in the bytes of a position. */
+    static final int SPOTS = 16;
+    /** Space sufficient for the header, apart from the position. */
+    private static final int HEADER_SPACE = 9 * MAX_VARINT;
+
+    /** Destination of my records. */
+    private final OutputStream _out;
+}
@@ -0,0 +1,355 @@
+package jump61;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** An automated Player that chooses moves by Monte Carlo tree search.
+ *  Each of its searches grows a game tree from the current position one
+ *  node per iteration, choosing the path to extend by the UCT rule and
+ *  valuing the new node by the outcome of a single quick playout: a
+ *  game finished with nearly random moves.  The move chosen is the one
+ *  most often explored.
+ *
+ *  A search stops after the session's playout budget (if any) is spent
+ *  or its time budget (if any) runs out.  If the session has a thread
+ *  pool (see Game.getSearchPool), each of its threads grows a tree of
+ *  its own, with an equal share of the playouts, and the trees' counts
+ *  of explorations of each move are summed.  Given a playout budget and
+ *  a seed, the moves chosen are reproducible.
+ *  @author Dasheng Chen
+ */
+class MCTSPlayer extends Player {
+
+    /** Time allotted to a move when neither a playout budget nor a time
+     *  budget has been set (milliseconds). */
+    private static final long TIME_LIMIT = 15000;
+
+    /** Weight of exploration against exploitation in UCT selection. */
+    private static final double EXPLORATION = Math.sqrt(2.0);
+
+    /** Playouts longer than this many moves per square are stopped and
+     *  scored by the number of squares each side owns. */
+    private static final int PLAYOUT_MOVES_PER_SQUARE = 8;
+
+    /** Number of random squares tried before a playout searches for a
+     *  legal move systematically. */
+    private static final int RANDOM_TRIES = 16;
+
+    /** A new player of GAME initially playing COLOR that chooses
+     *  moves automatically.
+     */
+    MCTSPlayer(Game game, Side color) {
+        super(game, color);
+    }
+
+    @Override
+    void makeMove() {
+        Board b = getBoard();
+        int move = findMove(b);
+        int r = b.row(move);
+        int c = b.col(move);
+        getGame().message("%s moves %d %d.\n", getSide().toCapitalizedString(),
+            r, c);
+        getGame().makeMove(r, c);
+    }
+
+    /** Return the square on which I choose to move on board B. */
+    int findMove(Board b) {
+        Game game = getGame();
+        long playouts = game.getPlayouts();
+        long time = game.getMoveTime();
+        if (playouts == 0 && time == 0) {
+            time = TIME_LIMIT;
+        }
+        long slice = game.getTimeSlice();
+        if (slice > 0 && (time == 0 || time > slice)) {
+            time = slice;
+        }
+        long deadline =
+            time == 0 ? Long.MAX_VALUE : System.currentTimeMillis() + time;
+        ForkJoinPool pool = game.getSearchPool();
+        int threads = pool == null ? 1 : pool.getParallelism();
+        TreeSearch[] searches = new TreeSearch[threads];
+        for (int k = 0; k < threads; k += 1) {
+            long share = playouts == 0 ? Long.MAX_VALUE
+                : playouts / threads + (k < playouts % threads ? 1 : 0);
+            searches[k] = new TreeSearch(b, getSide(), share, deadline,
+                                         game.randInt(Integer.MAX_VALUE));
+        }
+        if (pool == null) {
+            searches[0].invoke();
+        } else {
+            for (TreeSearch search : searches) {
+                pool.execute(search);
+            }
+            for (TreeSearch search : searches) {
+                search.join();
+            }
+        }
+        int[] visits = new int[b.size() * b.size()];
+        _playouts = 0;
+        for (TreeSearch search : searches) {
+            search.addVisits(visits);
+            _playouts += search.playouts();
+        }
+        int best = -1;
+        for (int n = 0; n < visits.length; n += 1) {
+            if (b.isLegal(getSide(), n)
+                && (best == -1 || visits[n] > visits[best])) {
+                best = n;
+            }
+        }
+        return best;
+    }
+
+    /** Return the number of playouts made by my last search. */
+    long playouts() {
+        return _playouts;
+    }
+
+    /** A node in a search tree: a position, and statistics about the
+     *  playouts that have passed through it. */
+    private static class Node {
+
+        /** A node reached by MOVER's move on square #MOVE (-1 and the
+         *  player to move at the root, for the root). */
+        Node(int move, Side mover) {
+            _move = move;
+            _mover = mover;
+        }
+
+        /** Return the one of my children with the greatest UCT value for
+         *  the player who moves from me. */
+        Node select() {
+            double logVisits = Math.log(_visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < _numChildren; k += 1) {
+                Node child = _children[k];
+                double value = child._wins / child._visits
+                    + EXPLORATION * Math.sqrt(logVisits / child._visits);
+                if (value > bestValue) {
+                    best = child;
+                    bestValue = value;
+                }
+            }
+            return best;
+        }
+
+        /** Record the result of a playout through me that was won by
+         *  WINNER (null if undecided). */
+        void update(Side winner) {
+            _visits += 1;
+            if (winner == _mover) {
+                _wins += 1;
+            } else if (winner == null) {
+                _wins += 0.5;
+            }
+        }
+
+        /** Square moved on to reach this node, or -1 at the root. */
+        private final int _move;
+        /** Player who moved to reach this node. */
+        private final Side _mover;
+        /** Moves from here not yet expanded into children (null until
+         *  the node is first expanded). */
+        private int[] _untried;
+        /** Number of valid entries in _untried. */
+        private int _numUntried;
+        /** Children expanded so far. */
+        private Node[] _children;
+        /** Number of valid entries in _children. */
+        private int _numChildren;
+        /** Number of playouts through this node. */
+        private int _visits;
+        /** Number of those playouts won by _mover (draws count 1/2). */
+        private double _wins;
+    }
+
+    /** One thread's search: a tree grown from the root position by a
+     *  number of playouts. */
+    private static class TreeSearch extends RecursiveAction {
+
+        /** A search from position ROOT with PLAYER to move, making at
+         *  most PLAYOUTS playouts and stopping at time DEADLINE, using
+         *  random numbers seeded by SEED. */
+        TreeSearch(Board root, Side player, long playouts, long deadline,
+                   long seed) {
+            _board = new MutableBoard(root);
+            _scratch = new MutableBoard(root);
+            _adjacency = Adjacency.forSize(root.size());
+            _root = new Node(-1, player.opposite());
+            _limit = playouts;
+            _deadline = deadline;
+            _random = new Random(seed);
+            _path = new Node[INITIAL_PATH];
+        }
+
+        @Override
+        protected void compute() {
+            while (_playouts < _limit
+                   && (_playouts % CLOCK_INTERVAL != 0
+                       || System.currentTimeMillis() < _deadline)) {
+                iterate();
+                _playouts += 1;
+            }
+        }
+
+        /** Return the number of playouts made. */
+        long playouts() {
+            return _playouts;
+        }
+
+        /** Add the number of visits to each child of my root to the entry
+         *  of VISITS for its move. */
+        void addVisits(int[] visits) {
+            for (int k = 0; k < _root._numChildren; k += 1) {
+                Node child = _root._children[k];
+                visits[child._move] += child._visits;
+            }
+        }
+
+        /** Grow my tree by one node, and value it with one playout. */
+        private void iterate() {
+            Node node = _root;
+            Side player = _root._mover.opposite();
+            int depth = 0;
+            while (node._untried != null && node._numUntried == 0
+                   && node._numChildren > 0) {
+                node = node.select();
+                _board.addSpot(player, node._move);
+                player = player.opposite();
+                depth = push(node, depth);
+            }
+            if (_board.getWinner() == null) {
+                if (node._untried == null) {
+                    expand(node, player);
+                }
+                if (node._numUntried > 0) {
+                    node = addChild(node, player);
+                    _board.addSpot(player, node._move);
+                    player = player.opposite();
+                    depth = push(node, depth);
+                }
+            }
+            Side winner = playout(player);
+            _root.update(winner);
+            for (int k = depth - 1; k >= 0; k -= 1) {
+                _path[k].update(winner);
+                _board.undo();
+            }
+        }
+
+        /** Record NODE at position DEPTH of the current path, and return
+         *  the new length of the path. */
+        private int push(Node node, int depth) {
+            if (depth == _path.length) {
+                _path = Arrays.copyOf(_path, 2 * depth);
+            }
+            _path[depth] = node;
+            return depth + 1;
+        }
+
+        /** Prepare NODE, whose position is on my board with PLAYER to
+         *  move, for expansion. */
+        private void expand(Node node, Side player) {
+            int[] moves = new int[_board.size() * _board.size()];
+            node._numUntried = SearchWorker.generateMoves(player, _board,
+                                                          moves);
+            node._untried = Arrays.copyOf(moves, node._numUntried);
+            node._children = new Node[node._numUntried];
+        }
+
+        /** Add a child to NODE, where PLAYER is to move, for one of its
+         *  untried moves, chosen at random, and return it. */
+        private Node addChild(Node node, Side player) {
+            int k = _random.nextInt(node._numUntried);
+            int move = node._untried[k];
+            node._numUntried -= 1;
+            node._untried[k] = node._untried[node._numUntried];
+            Node child = new Node(move, player);
+            node._children[node._numChildren] = child;
+            node._numChildren += 1;
+            return child;
+        }
+
+        /** Return the winner of a playout from the position on my board,
+         *  with PLAYER to move, or null if there is none by the end of
+         *  the playout.  Each move is the better, by tactical score (see
+         *  SearchWorker.tacticalScore), of two random legal moves. */
+        private Side playout(Side player) {
+            Board b = _scratch;
+            b.copy(_board);
+            int limit = PLAYOUT_MOVES_PER_SQUARE * b.size() * b.size();
+            for (int k = 0; k < limit && b.getWinner() == null; k += 1) {
+                int move = randomMove(player);
+                int other = randomMove(player);
+                if (SearchWorker.tacticalScore(player, b, _adjacency, other)
+                    > SearchWorker.tacticalScore(player, b, _adjacency,
+                                                 move)) {
+                    move = other;
+                }
+                b.addSpot(player, move);
+                player = player.opposite();
+            }
+            Side winner = b.getWinner();
+            if (winner == null) {
+                int red = b.numOfSide(Side.RED);
+                int blue = b.numOfSide(Side.BLUE);
+                winner = red > blue ? Side.RED
+                    : blue > red ? Side.BLUE : null;
+            }
+            return winner;
+        }
+
+        /** Return a random square on which PLAYER may move on my scratch
+         *  board, which must not be won. */
+        private int randomMove(Side player) {
+            Board b = _scratch;
+            int area = b.size() * b.size();
+            for (int k = 0; k < RANDOM_TRIES; k += 1) {
+                int n = _random.nextInt(area);
+                if (b.isLegal(player, n)) {
+                    return n;
+                }
+            }
+            int start = _random.nextInt(area);
+            for (int k = 0; ; k += 1) {
+                int n = (start + k) % area;
+                if (b.isLegal(player, n)) {
+                    return n;
+                }
+            }
+        }
+
+        /** Number of playouts between checks of the clock. */
+        private static final int CLOCK_INTERVAL = 64;
+        /** Initial capacity of _path. */
+        private static final int INITIAL_PATH = 64;
+
+        /** Board holding the position of the node being visited. */
+        private final MutableBoard _board;
+        /** Board on which playouts are made. */
+        private final MutableBoard _scratch;
+        /** Neighbor structure of my boards. */
+        private final Adjacency _adjacency;
+        /** Root of my tree.  Its _mover is the opponent of the player to
+         *  move at the root. */
+        private final Node _root;
+        /** Maximum number of playouts. */
+        private final long _limit;
+        /** Time at which to stop (milliseconds). */
+        private final long _deadline;
+        /** Source of random moves. */
+        private final Random _random;
+        /** Nodes (after the root) on the path being visited. */
+        private Node[] _path;
+        /** Number of playouts made so far. */
+        private long _playouts;
+    }
+
+    /** Number of playouts made by the last search. */
+    private long _playouts;
+}
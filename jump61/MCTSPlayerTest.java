@@ -0,0 +1,44 @@
+package jump61;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Unit tests of MCTSPlayers.
+ *  @author Dasheng Chen
+ */
+public class MCTSPlayerTest {
+
+    /** Return a new Game with no input, discarding its output. */
+    private static Game newGame() {
+        return new Game(new StringReader(""), new StringWriter(),
+                        new StringWriter(), new StringWriter());
+    }
+
+    @Test
+    public void testTakesWin() {
+        Board b = new MutableBoard(2);
+        b.set(0, 1, Side.RED);
+        b.set(1, 1, Side.RED);
+        b.set(2, 2, Side.RED);
+        b.set(3, 1, Side.BLUE);
+        MCTSPlayer player = new MCTSPlayer(newGame(), Side.RED);
+        int move = player.findMove(b);
+        assertEquals(Defaults.PLAYOUTS, player.playouts());
+        b.addSpot(Side.RED, move);
+        assertEquals(Side.RED, b.getWinner());
+    }
+
+    @Test
+    public void testLegalMove() {
+        Board b = new MutableBoard(4);
+        b.addSpot(Side.RED, 5);
+        b.addSpot(Side.BLUE, 6);
+        MCTSPlayer player = new MCTSPlayer(newGame(), Side.RED);
+        int move = player.findMove(b);
+        assertTrue(b.isLegal(Side.RED, move));
+    }
+
+}
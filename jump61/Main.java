@@ -1,6 +1,7 @@
 package jump61;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
@@ -21,15 +22,19 @@ public class Main {
     /** Size of the buffer used for commands from the GUI. */
     static final int COMMAND_BUFFER_SIZE = 2048;
 
+    /** Size of the buffers used for output in batch mode. */
+    static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
     /** Location of usage message resource. */
     static final String USAGE = "jump61/Usage.txt";
 
     /** Play jump61.  ARGS0 may consist of the single string
-     *  '--display' to indicate that the game is played using a GUI. Prints
-     *  a usage message if the arguments are wrong. */
+     *  '--display' to indicate that the game is played using a GUI, or
+     *  '--batch' to indicate that the standard input is a script of
+     *  commands. Prints a usage message if the arguments are wrong. */
     public static void main(String[] args0) {
         CommandArgs args =
-            new CommandArgs("--display{0,1}", args0);
+            new CommandArgs("--display{0,1} --batch{0,1}", args0);
         if (!args.ok()) {
             usage();
             return;
@@ -49,6 +54,16 @@ public class Main {
                 System.err.println("Internal error");
                 System.exit(1);
             }
+        } else if (args.contains("--batch")) {
+            Writer output =
+                new BufferedWriter(new OutputStreamWriter(System.out),
+                                   OUTPUT_BUFFER_SIZE);
+            game = new Game(new InputStreamReader(System.in),
+                            output, output,
+                            new BufferedWriter
+                            (new OutputStreamWriter(System.err)),
+                            true);
+            System.exit(game.play());
         } else {
             Writer output = new OutputStreamWriter(System.out);
             game = new Game(new InputStreamReader(System.in),
@@ -2,9 +2,16 @@ package jump61;
 
 import static jump61.Square.square;
 
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
-/** A Jump61 board state that may be modified.
+/** A Jump61 board state that may be modified.  The board is kept in a
+ *  primitive layout: one byte per square, holding the owning Side's
+ *  ordinal in its top two bits and the number of spots in its low six
+ *  bits.  Reading and writing squares thus touches no Square objects;
+ *  Squares are fetched (from a table indexed by packed square) only
+ *  when requested through get.
  *  @author Dasheng Chen
  */
 class MutableBoard extends Board {
@@ -20,33 +27,97 @@ class MutableBoard extends Board {
         this.copy(board0);
     }
 
+    /** A board whose contents are given by DUMP, a board in the format
+     *  produced by toString (as by the 'dump' command), and whose undo
+     *  history is clear.  Throws IllegalArgumentException if DUMP is
+     *  malformed. */
+    MutableBoard(String dump) {
+        String[] images = dump.replace("===", "").trim().split("\\s+");
+        int N = (int) Math.round(Math.sqrt(images.length));
+        if (N < 2 || N > Defaults.MAX_BOARD_SIZE
+            || N * N != images.length) {
+            throw new IllegalArgumentException("malformed board dump");
+        }
+        this.clear(N);
+        for (int i = 0; i < images.length; i += 1) {
+            Matcher image = SQUARE_IMAGE.matcher(images[i]);
+            if (!image.matches()) {
+                throw new IllegalArgumentException("malformed square: "
+                                                   + images[i]);
+            }
+            if (image.group(1) != null) {
+                _cells[i] =
+                    pack(image.group(2).equals("r") ? Side.RED : Side.BLUE,
+                         image.group(1).charAt(0) - '0');
+            }
+        }
+        this.recount();
+    }
+
     @Override
     void clear(int N) {
-        this._balanced = true;
         this._size = N;
-        this._boardArrayStack = new Stack<Square[]>();
-        this._boardArray = new Square[_size * _size];
-        for (int i = 0; i < _boardArray.length; i += 1) {
-            _boardArray[i] = Square.square(Side.WHITE, 1);
-        }
+        this._cells = new byte[_size * _size];
+        this.allocateScratch();
+        this.clearUndo();
+        Arrays.fill(_cells, INITIAL_CELL);
+        this.recount();
         announce();
     }
 
     @Override
     void copy(Board board) {
-        this._balanced = true;
-        this._boardArrayStack = new Stack<Square[]>();
-        this._size = board.size();
-        this._boardArray = new Square[_size * _size];
+        if (_cells == null || board.size() != _size) {
+            this._size = board.size();
+            this._cells = new byte[_size * _size];
+        }
+        this.allocateScratch();
+        this.clearUndo();
         this.internalCopy(board);
     }
 
+    /** Allocate the queue of overfull squares used by balanceBoard and
+     *  the per-square bookkeeping of the undo journal, and find the
+     *  neighbor structure, to suit my current size. */
+    private void allocateScratch() {
+        _adjacency = Adjacency.forSize(_size);
+        if (_cascade == null
+            || _cascade.numSquares() != _cells.length) {
+            _cascade = new CascadeQueue(_cells.length);
+            _journaledMove = new int[_cells.length];
+        }
+    }
+
     /** Copy the contents of BOARD into me, without modifying my undo
      *  history.  Assumes BOARD and I have the same size. */
     private void internalCopy(Board board) {
-        for (int i = 0; i < _boardArray.length; i += 1) {
+        if (board instanceof MutableBoard) {
+            MutableBoard mutable = (MutableBoard) board;
+            System.arraycopy(mutable._cells, 0, _cells, 0, _cells.length);
+            System.arraycopy(mutable._sideCounts, 0, _sideCounts, 0,
+                             _sideCounts.length);
+            _numPieces = mutable._numPieces;
+            _key = mutable._key;
+            return;
+        }
+        for (int i = 0; i < _cells.length; i += 1) {
             Square square = board.get(i);
-            _boardArray[i] = Square.square(square.getSide(), square.getSpots());
+            _cells[i] = pack(square.getSide(), square.getSpots());
+        }
+        this.recount();
+    }
+
+    /** Recompute the counts of squares of each color and of spots, and
+     *  the position key, from the contents of _cells. */
+    private void recount() {
+        Arrays.fill(_sideCounts, 0);
+        _numPieces = 0;
+        _key = Zobrist.size(_size);
+        for (int i = 0; i < _cells.length; i += 1) {
+            byte cell = _cells[i];
+            _sideCounts[sideOf(cell)] += 1;
+            _numPieces += spotsOf(cell);
+            _key ^= cellKey(i, cell);
         }
     }
 
@@ -57,29 +128,37 @@ class MutableBoard extends Board {
 
     @Override
     Square get(int n) {
-        return this._boardArray[n];
+        return SQUARES[_cells[n] & CELL_MASK];
+    }
+
+    @Override
+    Side side(int n) {
+        return SIDES[sideOf(_cells[n])];
+    }
+
+    @Override
+    int spots(int n) {
+        return spotsOf(_cells[n]);
     }
 
     @Override
     int numOfSide(Side side) {
-        String sideName = side.name();
-        int count = 0;
-        for (int i = 0; i < _boardArray.length; i += 1) {
-            String str = _boardArray[i].getSide().name();
-            if (sideName.compareToIgnoreCase(str) == 0) {
-                count += 1;
-            }
-        }
-        return count;
+        return _sideCounts[side.ordinal()];
     }
 
     @Override
     int numPieces() {
-        int count = 0;
-        for (int i = 0; i < _boardArray.length; i += 1) {
-            count += _boardArray[i].getSpots();
-        }
-        return count;
+        return _numPieces;
+    }
+
+    @Override
+    int neighbors(int n) {
+        return _adjacency.count(n);
+    }
+
+    @Override
+    long positionKey() {
+        return _key;
     }
 
     @Override
@@ -90,67 +169,60 @@ class MutableBoard extends Board {
     @Override
     void addSpot(Side player, int n) {
         if (this.isLegal(player, n)) {
-            int spots = this._boardArray[n].getSpots() + 1;
             this.markUndo();
-            set(n, spots, player);
-            this.balanceBoard();
+            internalSet(n, pack(player, spotsOf(_cells[n]) + 1));
+            _cascadeLength = 0;
+            this.balanceBoard(n);
+            _recording = false;
             announce();
         }
     }
 
-    /** Make the board balance. */
-    private void balanceBoard() {
-        if (_balanced || getWinner() != null) {
-            announce();
-            return;
+    /** Distribute the spots of overfull squares to their neighbors,
+     *  starting from square #START, until no square is overfull or one
+     *  side owns the entire board.  Only squares that have gone over
+     *  capacity are examined; see CascadeQueue for the order in which
+     *  they explode.  The board is checked for a winner between passes. */
+    private void balanceBoard(int start) {
+        CascadeQueue cascade = _cascade;
+        Adjacency adjacency = _adjacency;
+        if (isOverfull(start)) {
+            cascade.add(start, _cells.length);
         }
-        _balanced = true;
-        for (int i = 0; i < _boardArray.length; i += 1) {
-            Square square = _boardArray[i];
-            int neighborNum = neighbors(i);
-            if (neighborNum < square.getSpots()) {
-                _balanced = false;
-                int[] neighborList = getNeighborIndex(i, neighborNum);
-                Side side = square.getSide();
-                _boardArray[i] = square(side, square.getSpots() - neighborNum);
-                for (int nIndex = 0; nIndex < neighborNum; nIndex += 1) {
-                    int indexForBalance = neighborList[nIndex];
-                    Square squareTemp = _boardArray[indexForBalance];
-                    int newSpots = squareTemp.getSpots() + 1;
-                    _boardArray[indexForBalance] = square(side, newSpots);
+        while (cascade.startPass() && getWinner() == null) {
+            while (cascade.hasNext()) {
+                int index = cascade.next();
+                _cascadeLength += 1;
+                byte cell = _cells[index];
+                int side = cell & SIDE_BITS;
+                internalSet(index, (byte) (cell - adjacency.count(index)));
+                int last = adjacency.first(index + 1);
+                for (int j = adjacency.first(index); j < last; j += 1) {
+                    int indexForBalance = adjacency.neighbor(j);
+                    int newSpots = spotsOf(_cells[indexForBalance]) + 1;
+                    internalSet(indexForBalance, (byte) (side | newSpots));
+                    if (isOverfull(indexForBalance)) {
+                        cascade.add(indexForBalance, index);
+                    }
+                }
+                if (isOverfull(index)) {
+                    cascade.add(index, index);
                 }
             }
         }
-        balanceBoard();
+        cascade.clear();
     }
 
-    /** Return index of currentIndex's neighbor.
-     *  @param currentIndex current position index
-     *  @param neighborNum number of neighbors
-     *  @return a integer array
-     */
-    private int[] getNeighborIndex(int currentIndex, int neighborNum) {
-        int[] result = new int[neighborNum];
-        int count = 0;
-        int row = this.row(currentIndex);
-        int col = this.col(currentIndex);
-        if ((row - 1) < this._size && (row - 1) > 0) {
-            result[count] = sqNum(row - 1, col);
-            count += 1;
-        }
-        if ((row + 1) <= this._size) {
-            result[count] = sqNum(row + 1, col);
-            count += 1;
-        }
-        if ((col - 1) < this._size && (col - 1) > 0) {
-            result[count] = sqNum(row, col - 1);
-            count += 1;
-        }
-        if ((col + 1) <= this._size) {
-            result[count] = sqNum(row, col + 1);
-            count += 1;
-        }
-        return result;
+    /** Return the number of explosions in the cascade of the last move
+     *  made by addSpot. */
+    int cascadeLength() {
+        return _cascadeLength;
+    }
+
+    /** Return true iff square #N holds more spots than it has
+     *  neighbors. */
+    private boolean isOverfull(int n) {
+        return spotsOf(_cells[n]) > _adjacency.count(n);
     }
 
     @Override
@@ -161,39 +233,117 @@ class MutableBoard extends Board {
     @Override
     void set(int n, int num, Side player) {
         if (this.isLegal(player, n)) {
-            internalSet(n, square(player, num));
+            this.clearUndo();
+            internalSet(n, pack(player, num));
         }
     }
 
     @Override
     void undo() {
-        if (!this._boardArrayStack.empty()) {
-            this._boardArray = this._boardArrayStack.pop();
+        _recording = false;
+        int k = _journalSize;
+        while (k > 0) {
+            k -= 1;
+            int entry = _journal[k];
+            if (entry == MOVE_MARK) {
+                break;
+            }
+            internalSet(entry >> Byte.SIZE, (byte) entry);
         }
+        _journalSize = k;
     }
 
-    /** Record the beginning of a move in the undo history. */
+    /** Clear the undo history. */
+    private void clearUndo() {
+        if (_journal == null) {
+            _journal = new int[INITIAL_JOURNAL_SIZE];
+        }
+        _journalSize = 0;
+        _recording = false;
+    }
+
+    /** Record the beginning of a move in the undo history.  Until the
+     *  move is complete, internalSet journals the previous contents of
+     *  each square the first time the move changes it. */
     private void markUndo() {
-        Square[] newBoardArray = new Square[_boardArray.length];
-        for (int i = 0; i < _boardArray.length; i += 1) {
-            Square square = this._boardArray[i];
-            newBoardArray[i] = Square.square(square.getSide(),
-                square.getSpots());
+        _moveNumber += 1;
+        journal(MOVE_MARK);
+        _recording = true;
+    }
+
+    /** Append ENTRY to the undo journal, growing it if needed. */
+    private void journal(int entry) {
+        if (_journalSize == _journal.length) {
+            _journal = Arrays.copyOf(_journal, 2 * _journal.length);
         }
-        this._boardArrayStack.push(newBoardArray);
+        _journal[_journalSize] = entry;
+        _journalSize += 1;
     }
 
-    /** Set the contents of the square with index IND to SQ. Update counts
-     *  of numbers of squares of each color.  */
-    private void internalSet(int ind, Square sq) {
-        this._boardArray[ind] = sq;
-        this._balanced = false;
+    /** Set the contents of the square with index IND to the packed square
+     *  CELL. Update counts of numbers of squares of each color and the
+     *  position key, and record the old contents in the undo journal if a
+     *  move is in progress.  */
+    private void internalSet(int ind, byte cell) {
+        byte old = this._cells[ind];
+        if (_recording && _journaledMove[ind] != _moveNumber) {
+            _journaledMove[ind] = _moveNumber;
+            journal((ind << Byte.SIZE) | (old & CELL_MASK));
+        }
+        _sideCounts[sideOf(old)] -= 1;
+        _sideCounts[sideOf(cell)] += 1;
+        _numPieces += spotsOf(cell) - spotsOf(old);
+        _key ^= cellKey(ind, old) ^ cellKey(ind, cell);
+        this._cells[ind] = cell;
+    }
+
+    /** Return the contribution of square #IND, with packed contents
+     *  CELL, to the position key. */
+    private static long cellKey(int ind, byte cell) {
+        return Zobrist.square(ind, sideOf(cell), spotsOf(cell));
     }
 
-    /** Notify all Observers of a change. */
+    /** Return the packed representation of a square owned by SIDE with
+     *  SPOTS spots.  As for Square.square, a square with no spots or
+     *  owned by WHITE is the initial square. */
+    static byte pack(Side side, int spots) {
+        if (spots == 0 || side == Side.WHITE) {
+            return INITIAL_CELL;
+        }
+        return (byte) ((side.ordinal() << SIDE_SHIFT) | spots);
+    }
+
+    /** Return a table of the Squares represented by each packed square
+     *  (indexed as unsigned bytes). */
+    private static Square[] squares() {
+        Square[] result = new Square[CELL_MASK + 1];
+        for (int cell = 0; cell < result.length; cell += 1) {
+            int side = sideOf((byte) cell), spots = spotsOf((byte) cell);
+            if (side < SIDES.length && spots <= Square.MAX_SPOTS) {
+                result[cell] = square(SIDES[side], spots);
+            }
+        }
+        return result;
+    }
+
+    /** Return the Side ordinal of packed square CELL. */
+    static int sideOf(byte cell) {
+        return (cell >> SIDE_SHIFT) & SIDE_MASK;
+    }
+
+    /** Return the number of spots in packed square CELL. */
+    static int spotsOf(byte cell) {
+        return cell & SPOTS_MASK;
+    }
+
+    /** Notify all Observers of a change.  Boards that nobody observes,
+     *  such as those searched by AIs, skip the notification, which
+     *  would otherwise allocate. */
     private void announce() {
-        setChanged();
-        notifyObservers();
+        if (countObservers() > 0) {
+            setChanged();
+            notifyObservers();
+        }
     }
 
     @Override
@@ -204,15 +354,11 @@ class MutableBoard extends Board {
             try {
                 MutableBoard mtBoard = (MutableBoard) obj;
                 if (mtBoard.size() != this._size
-                    || mtBoard.hashCode() != this.hashCode()) {
+                    || mtBoard.positionKey() != this.positionKey()) {
                     return false;
                 }
-                for (int i = 0; i < this._size; i += 1) {
-                    Square objSquare = mtBoard.get(i);
-                    Square thisSquare = this._boardArray[i];
-                    if (!thisSquare.equals(objSquare)) {
-                        return false;
-                    }
+                if (!Arrays.equals(mtBoard._cells, this._cells)) {
+                    return false;
                 }
             } catch (ClassCastException e) {
                 System.out.println("Can't cast obj to MutableBoard");
@@ -223,20 +369,60 @@ class MutableBoard extends Board {
 
     @Override
     public int hashCode() {
-        int result = HASHMAGIC;
-        int code = this._size;
-        final int prime = 31;
-        for (int i = 0; i < _boardArray.length; i += 1) {
-            code += _boardArray[i].hashCode();
-        }
-        result = result * prime + code;
-        return result;
+        return (int) (_key ^ (_key >>> HASH_SHIFT));
     }
 
-    /** Hash magic number. */
-    private static final int HASHMAGIC = 11;
-    /** History stack. */
-    private Stack<Square[]> _boardArrayStack;
-    /** True if board is balanced. */
-    private boolean _balanced;
+    /** Shift used to fold the position key into a hash code. */
+    private static final int HASH_SHIFT = 32;
+    /** Journal entry marking the start of a move. */
+    private static final int MOVE_MARK = -1;
+    /** Initial length of the undo journal. */
+    private static final int INITIAL_JOURNAL_SIZE = 256;
+    /** Position of the Side ordinal within a packed square. */
+    private static final int SIDE_SHIFT = 6;
+    /** Mask for the Side ordinal, once shifted down. */
+    private static final int SIDE_MASK = 0x3;
+    /** Mask for the Side bits of a packed square, in place. */
+    private static final int SIDE_BITS = SIDE_MASK << SIDE_SHIFT;
+    /** Mask for the number of spots in a packed square. */
+    private static final int SPOTS_MASK = (1 << SIDE_SHIFT) - 1;
+    /** Mask for a packed square within a journal entry. */
+    private static final int CELL_MASK = 0xff;
+    /** Packed form of Square.INITIAL. */
+    private static final byte INITIAL_CELL = 1;
+    /** All Sides, indexed by ordinal. */
+    private static final Side[] SIDES = Side.values();
+    /** The Square represented by each packed square. */
+    private static final Square[] SQUARES = squares();
+    /** The dumped image of a square (see Square.toString). */
+    private static final Pattern SQUARE_IMAGE =
+        Pattern.compile("([1-9])([rb])|1-");
+
+    /** Squares of the board, packed, in square-number order. */
+    private byte[] _cells;
+    /** Undo history: entries (square number << 8 | its previous packed
+     *  contents), with each move's entries preceded by MOVE_MARK.
+     *  Undoing a move replays its entries in reverse. */
+    private int[] _journal;
+    /** Number of ints in use in _journal. */
+    private int _journalSize;
+    /** True while the changes of a move are being journaled. */
+    private boolean _recording;
+    /** Serial number of the move currently or most recently journaled. */
+    private int _moveNumber;
+    /** _journaledMove[i] is the serial number of the last move for which
+     *  square #i's previous contents were journaled. */
+    private int[] _journaledMove;
+    /** Number of squares of each color, indexed by Side ordinal. */
+    private int[] _sideCounts = new int[SIDES.length];
+    /** Total number of spots on the board. */
+    private int _numPieces;
+    /** Zobrist key of the current position. */
+    private long _key;
+    /** Neighbor structure of boards of my size. */
+    private Adjacency _adjacency;
+    /** Overfull squares awaiting an explosion during balanceBoard. */
+    private CascadeQueue _cascade;
+    /** Number of explosions in the cascade of the last move. */
+    private int _cascadeLength;
 }
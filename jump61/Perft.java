@@ -0,0 +1,248 @@
+package jump61;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import ucb.util.CommandArgs;
+
+/** Perft: counts of the positions reachable from a given position in a
+ *  given number of moves, found by making and undoing every sequence of
+ *  legal moves of that length.  A game that is won before the last move
+ *  ends there, and contributes nothing to the count; the positions
+ *  after the last move (the leaves) are counted whether won or not.
+ *  Moves are made without regard to symmetry, and each one, including
+ *  the last, is actually made, so that the counts check move
+ *  generation, cascades, undo, and the detection of wins, and the
+ *  time taken measures their speed.  In divide mode, the counts are
+ *  also given separately for each first move, which narrows down the
+ *  source of a discrepancy.  Reference counts are kept in
+ *  testing/perft.txt.
+ *  @author Dasheng Chen
+ */
+public class Perft {
+
+    /** Options accepted by main. */
+    private static final String OPTIONS =
+        "--depth=(\\d+){0,1} --size=(\\d+){0,1} --position=(.+){0,1} "
+        + "--side=(red|blue){0,1} --divide{0,1} --check=(.+){0,1}";
+
+    /** Usage message for main. */
+    private static final String USAGE =
+        "Usage: java jump61.Perft [ --depth=N ] [ --size=N | --position=FILE"
+        + " ]\n"
+        + "           [ --side=red|blue ] [ --divide ]\n"
+        + "       java jump61.Perft --check=FILE\n"
+        + "  --depth:    Number of moves (default 4).\n"
+        + "  --size:     Start from an empty N x N board (default 6).\n"
+        + "  --position: Start from the board dumped in FILE.\n"
+        + "  --side:     Side making the first move (default: the side to"
+        + " move).\n"
+        + "  --divide:   Also give the count after each first move.\n"
+        + "  --check:    Compare the counts against the references in"
+        + " FILE.\n";
+
+    /** Default number of moves. */
+    private static final int DEPTH = 4;
+    /** Default board size. */
+    private static final int SIZE = 6;
+    /** Nanoseconds per second. */
+    private static final double NANOS = 1e9;
+
+    /** Count positions as directed by the options in ARGS0 (see USAGE),
+     *  and print the results.  Exits with code 1 on errors, including
+     *  counts that differ from the references. */
+    public static void main(String... args0) {
+        CommandArgs args = new CommandArgs(OPTIONS, args0);
+        if (!args.ok()) {
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+        try {
+            if (args.contains("--check")) {
+                if (!check(args.getFirst("--check"))) {
+                    System.exit(1);
+                }
+                return;
+            }
+            MutableBoard b;
+            if (args.contains("--position")) {
+                b = readBoard(args.getFirst("--position"));
+            } else {
+                b = new MutableBoard(intOption(args, "--size", SIZE));
+            }
+            Side player = b.whoseMove();
+            if (args.contains("--side")) {
+                player = Side.parseSide(args.getFirst("--side"));
+            }
+            int depth = intOption(args, "--depth", DEPTH);
+            Perft perft = new Perft(b);
+            long start = System.nanoTime();
+            long leaves;
+            if (args.contains("--divide") && depth > 0) {
+                leaves = perft.divide(player, depth);
+            } else {
+                leaves = perft.leaves(player, depth);
+            }
+            double seconds = (System.nanoTime() - start) / NANOS;
+            System.out.printf("perft %d: %d leaves, %d moves in %.2f s"
+                              + " (%.0f moves/s)%n",
+                              depth, leaves, perft.moves(), seconds,
+                              perft.moves() / seconds);
+        } catch (IllegalArgumentException | IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return the value of option KEY in ARGS, or DEFLT if absent. */
+    private static int intOption(CommandArgs args, String key, int deflt) {
+        String value = args.getFirst(key);
+        return value == null ? deflt : Integer.parseInt(value);
+    }
+
+    /** Return the board dumped in the file named NAME. */
+    private static MutableBoard readBoard(String name) throws IOException {
+        byte[] contents = Files.readAllBytes(Paths.get(name));
+        return new MutableBoard(new String(contents, StandardCharsets.UTF_8));
+    }
+
+    /** Check the counts given in the file named NAME, printing the
+     *  outcome of each check, and return true iff all succeed.  Each
+     *  entry in the file is either a line SIZE SIDE DEPTH LEAVES,
+     *  counting from an empty SIZE x SIZE board, or a dumped board
+     *  followed by a line SIDE DEPTH LEAVES.  Blank lines and lines
+     *  starting with '#' are ignored. */
+    static boolean check(String name) throws IOException {
+        BufferedReader inp = new BufferedReader(new FileReader(name));
+        StringBuilder dump = null;
+        MutableBoard b = null;
+        String description = null;
+        int entries = 0, failures = 0;
+        for (String line = inp.readLine(); line != null;
+             line = inp.readLine()) {
+            line = line.trim();
+            if (dump != null) {
+                dump.append(line).append('\n');
+                if (line.equals("===")) {
+                    b = new MutableBoard(dump.toString());
+                    dump = null;
+                }
+                continue;
+            } else if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            } else if (line.equals("===")) {
+                dump = new StringBuilder(line).append('\n');
+                entries += 1;
+                description = "position #" + entries;
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (b == null && fields.length == 4) {
+                b = new MutableBoard(Integer.parseInt(fields[0]));
+                description = "size " + fields[0];
+                fields = new String[] { fields[1], fields[2], fields[3] };
+            } else if (b == null || fields.length != 3) {
+                throw new IllegalArgumentException("bad line in " + name
+                                                   + ": " + line);
+            }
+            int depth = Integer.parseInt(fields[1]);
+            long expected = Long.parseLong(fields[2]);
+            long leaves =
+                new Perft(b).leaves(Side.parseSide(fields[0]), depth);
+            if (leaves == expected) {
+                System.out.printf("%s, %s, depth %d: %d ok%n",
+                                  description, fields[0], depth, leaves);
+            } else {
+                System.out.printf("%s, %s, depth %d: expected %d, got %d%n",
+                                  description, fields[0], depth,
+                                  expected, leaves);
+                failures += 1;
+            }
+            b = null;
+        }
+        inp.close();
+        if (failures > 0) {
+            System.out.printf("%d perft checks failed.%n", failures);
+        }
+        return failures == 0;
+    }
+
+    /** A counter of the positions reachable from B, which it uses (and
+     *  restores) as it counts. */
+    Perft(MutableBoard b) {
+        _board = b;
+    }
+
+    /** Return the number of positions reached after DEPTH moves from my
+     *  board, PLAYER moving first. */
+    long leaves(Side player, int depth) {
+        if (depth > 0 && _board.getWinner() != null) {
+            return 0;
+        }
+        return count(player, depth);
+    }
+
+    /** As for leaves(PLAYER, DEPTH), but also print the count after each
+     *  first move, as a line R C: COUNT.  Requires DEPTH > 0. */
+    long divide(Side player, int depth) {
+        if (_board.getWinner() != null) {
+            return 0;
+        }
+        long total = 0;
+        for (int n = 0; n < _board.size() * _board.size(); n += 1) {
+            if (_board.isLegal(player, n)) {
+                long leaves = countAfter(player, n, depth);
+                System.out.printf("%d %d: %d%n",
+                                  _board.row(n), _board.col(n), leaves);
+                total += leaves;
+            }
+        }
+        return total;
+    }
+
+    /** Return the number of moves I have made. */
+    long moves() {
+        return _moves;
+    }
+
+    /** Return the number of positions reached after DEPTH moves from my
+     *  board (which is not won), PLAYER moving first. */
+    private long count(Side player, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long result = 0;
+        for (int n = 0; n < _board.size() * _board.size(); n += 1) {
+            if (_board.isLegal(player, n)) {
+                result += countAfter(player, n, depth);
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of positions reached after DEPTH moves from my
+     *  board, the first being PLAYER's move to square #N. */
+    private long countAfter(Side player, int n, int depth) {
+        _board.addSpot(player, n);
+        _moves += 1;
+        long result;
+        if (depth == 1) {
+            result = 1;
+        } else if (_board.getWinner() != null) {
+            result = 0;
+        } else {
+            result = count(player.opposite(), depth - 1);
+        }
+        _board.undo();
+        return result;
+    }
+
+    /** The board on which I make moves. */
+    private final MutableBoard _board;
+    /** Number of moves made so far. */
+    private long _moves;
+}
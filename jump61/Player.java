@@ -36,6 +36,22 @@ abstract class Player {
      *  proper color and that the game is not yet won. */
     abstract void makeMove();
 
+    /** Begin using idle time, while my opponent decides on a move, to
+     *  prepare for my next move.  Does nothing by default. */
+    void startPondering() {
+    }
+
+    /** Stop any preparation begun by startPondering, returning once it
+     *  has stopped.  Does nothing by default. */
+    void stopPondering() {
+    }
+
+    /** Return the statistics of the search for my last move, or null if
+     *  I have made none, or do not search.  Returns null by default. */
+    SearchStats searchStats() {
+        return null;
+    }
+
     /** My current color. */
     private Side _color;
     /** The game I'm in. */
@@ -0,0 +1,210 @@
+package jump61;
+
+import java.util.ArrayDeque;
+import java.util.function.LongSupplier;
+
+/** Shares a fixed number of search workers among the automated moves of
+ *  many games.  A move must be admitted before it is searched, and
+ *  waits, if all workers are busy, for its turn: moves in interactive
+ *  games (those with a human player) go before moves in background ones,
+ *  and otherwise moves go in order of arrival, except that a background
+ *  move that has waited longer than twice the longest time slice goes
+ *  next regardless, so that background games slow down under load but
+ *  never stop.  Each admitted move is given a time slice, the longest
+ *  it may search: the longest slice while there are no more moves
+ *  wanting workers than there are workers, and otherwise a share of it
+ *  proportional to the number of workers; in either case less the time
+ *  the move waited, and no less than a minimum.  Thus, as load grows,
+ *  moves get quicker and worse, and the time from a move's arrival to
+ *  its completion stays near the longest slice, until the minimum is
+ *  reached.  The
+ *  scheduler also keeps statistics of the number of moves waiting and
+ *  the time they waited.
+ *  @author Dasheng Chen
+ */
+class SearchScheduler {
+
+    /** The priorities of moves, highest first. */
+    enum Priority {
+        /** A move in a game against a human. */
+        INTERACTIVE,
+        /** A move in a game among automated players. */
+        BACKGROUND;
+    }
+
+    /** A scheduler with WORKERS workers, giving each move a time slice of
+     *  at most MAXSLICE and at least MINSLICE milliseconds. */
+    SearchScheduler(int workers, long maxSlice, long minSlice) {
+        this(workers, maxSlice, minSlice, SYSTEM_CLOCK);
+    }
+
+    /** A scheduler as for SearchScheduler(WORKERS, MAXSLICE, MINSLICE)
+     *  that reads the time (nanoseconds) from CLOCK. */
+    @SuppressWarnings("unchecked")
+    SearchScheduler(int workers, long maxSlice, long minSlice,
+                    LongSupplier clock) {
+        if (workers < 1 || minSlice < 1 || maxSlice < minSlice) {
+            throw new IllegalArgumentException("bad scheduler parameters");
+        }
+        _workers = workers;
+        _maxSlice = maxSlice;
+        _minSlice = minSlice;
+        _clock = clock;
+        int n = Priority.values().length;
+        _queues = new ArrayDeque[n];
+        for (int p = 0; p < n; p += 1) {
+            _queues[p] = new ArrayDeque<Waiter>();
+        }
+        _admitted = new long[n];
+        _waitNanos = new long[n];
+        _maxWaitNanos = new long[n];
+    }
+
+    /** Wait until a move of priority PRIORITY may be searched, and return
+     *  its time slice in milliseconds.  The caller must call release
+     *  when the move's search is over. */
+    synchronized long acquire(Priority priority) {
+        Waiter waiter = new Waiter(_clock.getAsLong());
+        _queues[priority.ordinal()].add(waiter);
+        boolean interrupted = false;
+        while (_running >= _workers || next() != waiter) {
+            try {
+                wait();
+            } catch (InterruptedException excp) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        _queues[priority.ordinal()].poll();
+        _running += 1;
+        long waited = _clock.getAsLong() - waiter._arrival;
+        int p = priority.ordinal();
+        _admitted[p] += 1;
+        _waitNanos[p] += waited;
+        _maxWaitNanos[p] = Math.max(_maxWaitNanos[p], waited);
+        _slice = slice(waited / MILLI);
+        notifyAll();
+        return _slice;
+    }
+
+    /** Note that the search of an admitted move is over. */
+    synchronized void release() {
+        _running -= 1;
+        notifyAll();
+    }
+
+    /** Return the waiting move that goes next, or null if none. */
+    private Waiter next() {
+        Waiter background = _queues[Priority.BACKGROUND.ordinal()].peek();
+        if (background != null
+            && _clock.getAsLong() - background._arrival
+               > AGING * _maxSlice * MILLI) {
+            return background;
+        }
+        for (ArrayDeque<Waiter> queue : _queues) {
+            if (!queue.isEmpty()) {
+                return queue.peek();
+            }
+        }
+        return null;
+    }
+
+    /** Return the time slice of a move admitted now after waiting WAITED
+     *  milliseconds (milliseconds). */
+    private long slice(long waited) {
+        int demand = _running + waiting();
+        long share = _maxSlice;
+        if (demand > _workers) {
+            share = _maxSlice * _workers / demand;
+        }
+        return Math.max(_minSlice, Math.min(share, _maxSlice - waited));
+    }
+
+    /** Return the number of moves waiting to be admitted. */
+    synchronized int waiting() {
+        int result = 0;
+        for (ArrayDeque<Waiter> queue : _queues) {
+            result += queue.size();
+        }
+        return result;
+    }
+
+    /** Return the number of admitted moves whose searches are not over. */
+    synchronized int running() {
+        return _running;
+    }
+
+    /** Return the number of moves of priority PRIORITY admitted so far. */
+    synchronized long admitted(Priority priority) {
+        return _admitted[priority.ordinal()];
+    }
+
+    /** Return my state and statistics as a single line of KEY=VALUE
+     *  fields, for other programs to read.  Times are in
+     *  microseconds, except for time slices, in milliseconds. */
+    synchronized String toRecord() {
+        StringBuilder record = new StringBuilder();
+        record.append("workers=").append(_workers)
+            .append(" running=").append(_running)
+            .append(" slice_ms=").append(_slice);
+        for (Priority priority : Priority.values()) {
+            int p = priority.ordinal();
+            String name = priority.toString().toLowerCase();
+            record.append(" waiting_").append(name).append('=')
+                .append(_queues[p].size())
+                .append(" admitted_").append(name).append('=')
+                .append(_admitted[p])
+                .append(" mean_wait_us_").append(name).append('=')
+                .append(_admitted[p] == 0 ? 0
+                        : _waitNanos[p] / _admitted[p] / MICRO)
+                .append(" max_wait_us_").append(name).append('=')
+                .append(_maxWaitNanos[p] / MICRO);
+        }
+        return record.toString();
+    }
+
+    /** A move waiting to be admitted. */
+    private static class Waiter {
+        /** A move arriving at time ARRIVAL (nanoseconds). */
+        Waiter(long arrival) {
+            _arrival = arrival;
+        }
+
+        /** Time of my arrival (nanoseconds). */
+        private final long _arrival;
+    }
+
+    /** Multiple of the longest time slice after which a waiting
+     *  background move goes next. */
+    private static final int AGING = 2;
+    /** Nanoseconds per millisecond. */
+    private static final long MILLI = 1000000;
+    /** Nanoseconds per microsecond. */
+    private static final long MICRO = 1000;
+    /** The system's clock (see System.nanoTime). */
+    private static final LongSupplier SYSTEM_CLOCK = new LongSupplier() {
+        @Override
+        public long getAsLong() {
+            return System.nanoTime();
+        }
+    };
+
+    /** Number of workers. */
+    private final int _workers;
+    /** Longest and shortest time slices (milliseconds). */
+    private final long _maxSlice, _minSlice;
+    /** Source of the time (nanoseconds). */
+    private final LongSupplier _clock;
+    /** Moves waiting to be admitted, in order of arrival, indexed by
+     *  priority. */
+    private final ArrayDeque<Waiter>[] _queues;
+    /** Number of admitted moves whose searches are not over. */
+    private int _running;
+    /** Time slice of the last move admitted (milliseconds). */
+    private long _slice;
+    /** Number of moves admitted, total time they waited, and longest
+     *  time any waited (nanoseconds), indexed by priority. */
+    private final long[] _admitted, _waitNanos, _maxWaitNanos;
+}
@@ -0,0 +1,119 @@
+package jump61;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import static jump61.SearchScheduler.Priority.*;
+
+/** Unit tests of SearchSchedulers.
+ *  @author Dasheng Chen
+ */
+public class SearchSchedulerTest {
+
+    /** Start a thread that takes a move of priority PRIORITY through
+     *  SCHEDULER, recording its slice in SLICES and NAME in ORDER once
+     *  admitted, and return it once the move is waiting. */
+    private static Thread move(SearchScheduler scheduler,
+                               SearchScheduler.Priority priority,
+                               String name, List<String> order,
+                               List<Long> slices) {
+        int waiting = scheduler.waiting();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                long slice = scheduler.acquire(priority);
+                synchronized (order) {
+                    order.add(name);
+                    slices.add(slice);
+                }
+                scheduler.release();
+            }
+        };
+        thread.start();
+        while (scheduler.waiting() == waiting) {
+            Thread.yield();
+        }
+        return thread;
+    }
+
+    @Test
+    public void testSchedule() throws InterruptedException {
+        Clock clock = new Clock();
+        SearchScheduler scheduler =
+            new SearchScheduler(1, 1000, 300, clock);
+        assertEquals(1000, scheduler.acquire(INTERACTIVE));
+        assertEquals(1, scheduler.running());
+        List<String> order = new ArrayList<String>();
+        List<Long> slices = new ArrayList<Long>();
+        Thread[] threads = {
+            move(scheduler, BACKGROUND, "b1", order, slices),
+            move(scheduler, INTERACTIVE, "i1", order, slices),
+            move(scheduler, BACKGROUND, "b2", order, slices),
+            move(scheduler, INTERACTIVE, "i2", order, slices),
+        };
+        assertEquals(4, scheduler.waiting());
+        assertTrue(scheduler.toRecord().contains("waiting_background=2"));
+        clock.advance(200);
+        scheduler.release();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of("i1", "i2", "b1", "b2"), order);
+        assertEquals(List.of(300L, 333L, 500L, 800L), slices);
+        assertEquals(3, scheduler.admitted(INTERACTIVE));
+        assertEquals(2, scheduler.admitted(BACKGROUND));
+        assertEquals(0, scheduler.running());
+        assertTrue(scheduler.toRecord()
+                   .contains(" mean_wait_us_background=200000"
+                             + " max_wait_us_background=200000"));
+    }
+
+    @Test
+    public void testAging() throws InterruptedException {
+        assertEquals(List.of("i", "b"), aging(100));
+        assertEquals(List.of("b", "i"), aging(101));
+    }
+
+    /** Return the order in which a background move, which has waited
+     *  WAITED milliseconds, and an interactive move, which has just
+     *  arrived, are admitted by a scheduler with one worker and
+     *  slices of 50 milliseconds. */
+    private static List<String> aging(long waited)
+        throws InterruptedException {
+        Clock clock = new Clock();
+        SearchScheduler scheduler = new SearchScheduler(1, 50, 50, clock);
+        scheduler.acquire(INTERACTIVE);
+        List<String> order = new ArrayList<String>();
+        List<Long> slices = new ArrayList<Long>();
+        Thread background = move(scheduler, BACKGROUND, "b", order, slices);
+        clock.advance(waited);
+        Thread interactive =
+            move(scheduler, INTERACTIVE, "i", order, slices);
+        scheduler.release();
+        background.join();
+        interactive.join();
+        assertEquals(List.of(50L, 50L), slices);
+        return order;
+    }
+
+    /** A clock that moves only when told to. */
+    private static class Clock implements LongSupplier {
+        @Override
+        public long getAsLong() {
+            return _now;
+        }
+
+        /** Move me forward MILLIS milliseconds. */
+        void advance(long millis) {
+            _now += millis * 1000000;
+        }
+
+        /** The current time (nanoseconds). */
+        private volatile long _now;
+    }
+
+}
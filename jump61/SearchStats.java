@@ -0,0 +1,241 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** Statistics about a game-tree search: how many positions it visited,
+ *  how fast, how often it cut off or found a position in the
+ *  transposition table, how long the cascades of the moves it tried
+ *  were, and how long each of its iterations (see AI) took.  Each
+ *  SearchWorker counts its own share; the AI gathers the shares into
+ *  the statistics for the whole search.
+ *  @author Dasheng Chen
+ */
+class SearchStats {
+
+    /** Empty statistics. */
+    SearchStats() {
+        _iterationNanos = new long[INITIAL_ITERATIONS];
+    }
+
+    /** A copy of STATS. */
+    SearchStats(SearchStats stats) {
+        _iterationNanos = stats._iterationNanos.clone();
+        _iterations = stats._iterations;
+        add(stats);
+        _depth = stats._depth;
+        _elapsedNanos = stats._elapsedNanos;
+    }
+
+    /** Reset all my statistics to zero. */
+    void clear() {
+        _nodes = _cutoffs = _probes = _hits = 0;
+        _moves = _explosions = 0;
+        _longestCascade = 0;
+        _depth = 0;
+        _iterations = 0;
+        _elapsedNanos = 0;
+    }
+
+    /** Add the counts in OTHER to mine. */
+    void add(SearchStats other) {
+        _nodes += other._nodes;
+        _cutoffs += other._cutoffs;
+        _probes += other._probes;
+        _hits += other._hits;
+        _moves += other._moves;
+        _explosions += other._explosions;
+        _longestCascade = Math.max(_longestCascade, other._longestCascade);
+    }
+
+    /** Count a visit to a node. */
+    void countNode() {
+        _nodes += 1;
+    }
+
+    /** Count a beta cutoff. */
+    void countCutoff() {
+        _cutoffs += 1;
+    }
+
+    /** Count a probe of the transposition table, which found an entry
+     *  iff HIT. */
+    void countProbe(boolean hit) {
+        _probes += 1;
+        if (hit) {
+            _hits += 1;
+        }
+    }
+
+    /** Count a move whose cascade made EXPLOSIONS squares explode. */
+    void countMove(int explosions) {
+        _moves += 1;
+        _explosions += explosions;
+        _longestCascade = Math.max(_longestCascade, explosions);
+    }
+
+    /** Record the completion of an iteration to depth DEPTH that took
+     *  NANOS nanoseconds. */
+    void endIteration(int depth, long nanos) {
+        if (_iterations == _iterationNanos.length) {
+            _iterationNanos = Arrays.copyOf(_iterationNanos, 2 * _iterations);
+        }
+        _iterationNanos[_iterations] = nanos;
+        _iterations += 1;
+        _depth = depth;
+    }
+
+    /** Record that the whole search took NANOS nanoseconds. */
+    void setElapsed(long nanos) {
+        _elapsedNanos = nanos;
+    }
+
+    /** Return the number of nodes visited. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Return the number of beta cutoffs. */
+    long cutoffs() {
+        return _cutoffs;
+    }
+
+    /** Return the number of probes of the transposition table. */
+    long probes() {
+        return _probes;
+    }
+
+    /** Return the number of probes that found an entry. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of moves tried. */
+    long moves() {
+        return _moves;
+    }
+
+    /** Return the total number of explosions in the cascades of the
+     *  moves tried. */
+    long explosions() {
+        return _explosions;
+    }
+
+    /** Return the greatest number of explosions in one move's cascade. */
+    int longestCascade() {
+        return _longestCascade;
+    }
+
+    /** Return the depth of the last completed iteration (0 if none). */
+    int depth() {
+        return _depth;
+    }
+
+    /** Return the number of completed iterations. */
+    int iterations() {
+        return _iterations;
+    }
+
+    /** Return the time taken by iteration #K (nanoseconds). */
+    long iterationNanos(int k) {
+        return _iterationNanos[k];
+    }
+
+    /** Return the time taken by the whole search (nanoseconds). */
+    long elapsedNanos() {
+        return _elapsedNanos;
+    }
+
+    /** Return the number of nodes visited per second. */
+    long nodesPerSecond() {
+        return _elapsedNanos == 0 ? 0 : _nodes * NANOS / _elapsedNanos;
+    }
+
+    /** Return the statistics as one line of space-separated KEY=VALUE
+     *  fields, with integer values and times in microseconds, for
+     *  programs to read. */
+    String toRecord() {
+        StringBuilder record = new StringBuilder();
+        record.append("depth=").append(_depth)
+            .append(" nodes=").append(_nodes)
+            .append(" time_us=").append(_elapsedNanos / MICRO)
+            .append(" nps=").append(nodesPerSecond())
+            .append(" cutoffs=").append(_cutoffs)
+            .append(" probes=").append(_probes)
+            .append(" hits=").append(_hits)
+            .append(" moves=").append(_moves)
+            .append(" explosions=").append(_explosions)
+            .append(" longest_cascade=").append(_longestCascade)
+            .append(" iterations_us=");
+        for (int k = 0; k < _iterations; k += 1) {
+            if (k > 0) {
+                record.append(',');
+            }
+            record.append(_iterationNanos[k] / MICRO);
+        }
+        return record.toString();
+    }
+
+    /** Returns the statistics in human-readable form, on several
+     *  lines. */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("depth %d, %d nodes in %.1f ms"
+                                  + " (%d nodes/s)%n",
+                                  _depth, _nodes,
+                                  (double) _elapsedNanos / MILLI,
+                                  nodesPerSecond()));
+        text.append("    iterations (ms):");
+        for (int k = 0; k < _iterations; k += 1) {
+            text.append(String.format(" %.1f",
+                                      (double) _iterationNanos[k] / MILLI));
+        }
+        text.append(String.format("%n    %d cutoffs; table hits %d of %d"
+                                  + " (%.1f%%)%n",
+                                  _cutoffs, _hits, _probes,
+                                  percent(_hits, _probes)));
+        text.append(String.format("    cascades: %.2f explosions per move"
+                                  + " over %d moves, longest %d",
+                                  _moves == 0 ? 0.0
+                                  : (double) _explosions / _moves,
+                                  _moves, _longestCascade));
+        return text.toString();
+    }
+
+    /** Return PART as a percentage of WHOLE (0 if WHOLE is 0). */
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0.0 : 100.0 * part / whole;
+    }
+
+    /** Initial capacity of _iterationNanos. */
+    private static final int INITIAL_ITERATIONS = 16;
+    /** Nanoseconds per second. */
+    private static final long NANOS = 1000000000L;
+    /** Nanoseconds per millisecond. */
+    private static final long MILLI = 1000000L;
+    /** Nanoseconds per microsecond. */
+    private static final long MICRO = 1000L;
+
+    /** Number of nodes visited. */
+    private long _nodes;
+    /** Number of beta cutoffs. */
+    private long _cutoffs;
+    /** Number of probes of the transposition table. */
+    private long _probes;
+    /** Number of those probes that found an entry. */
+    private long _hits;
+    /** Number of moves tried. */
+    private long _moves;
+    /** Number of explosions in the cascades of those moves. */
+    private long _explosions;
+    /** Greatest number of explosions in one move's cascade. */
+    private int _longestCascade;
+    /** Depth of the last completed iteration. */
+    private int _depth;
+    /** Times taken by the completed iterations (nanoseconds). */
+    private long[] _iterationNanos;
+    /** Number of completed iterations. */
+    private int _iterations;
+    /** Time taken by the whole search (nanoseconds). */
+    private long _elapsedNanos;
+}
@@ -0,0 +1,418 @@
+package jump61;
+
+import java.util.Arrays;
+
+import static jump61.TranspositionTable.*;
+
+/** One thread's share of an AI's game-tree search.  A SearchWorker
+ *  searches its own copy of the position, so several of them may work
+ *  for the same AI at once; they share only the AI's transposition
+ *  table and its signal to stop.
+ *  @author Dasheng Chen
+ */
+class SearchWorker {
+
+    /** A worker searching on behalf of AI. */
+    SearchWorker(AI ai) {
+        _ai = ai;
+    }
+
+    /** Make my board a copy of BOARD, the root position of the search
+     *  numbered SEARCHNUM.  Does nothing if my board already holds that
+     *  root.  Killer moves and history scores carry over from earlier
+     *  searches on boards of the same size, the latter with diminished
+     *  weight. */
+    void setRoot(Board board, int searchNum) {
+        if (_board == null || _board.size() != board.size()) {
+            int area = board.size() * board.size();
+            _board = new MutableBoard(board);
+            _adjacency = Adjacency.forSize(board.size());
+            _symmetry = Symmetry.forSize(board.size());
+            _moves = new int[INITIAL_PLIES][];
+            _killers = new int[INITIAL_PLIES][];
+            _history = new int[Side.values().length][area];
+            _keys = new long[area];
+        } else if (searchNum != _searchNum) {
+            _board.copy(board);
+            ageHistory();
+        }
+        _searchNum = searchNum;
+    }
+
+    /** Return the board I search.  Between searches, it holds the
+     *  position given to setRoot. */
+    MutableBoard getBoard() {
+        return _board;
+    }
+
+    /** Return the statistics (see SearchStats) of my searches since
+     *  they were last cleared. */
+    SearchStats stats() {
+        return _stats;
+    }
+
+    /** Return the value of my board for PLAYER, who is to move,
+     *  searching D plies deep (D == 0 denotes static evaluation), using
+     *  alpha-beta pruning with window ALPHA .. BETA.  A result strictly
+     *  inside the window is exact; otherwise it is a bound on the value,
+     *  beyond the window edge it reaches.  PLY (> 0) is the distance
+     *  from the root of the search.  Searches the move recorded for the
+     *  position in the transposition table, if any, first, and, if the
+     *  AI orders moves and D > 1, the rest as given by orderMoves.  (Just
+     *  above the leaves, sorting costs more than the cutoffs it gains,
+     *  since evaluating a leaf is cheap.)  Consults and fills the
+     *  transposition table, under the key of the canonical orientation
+     *  of the position (see Board.orientation), so that symmetric
+     *  positions share entries; the moves in entries are those of the
+     *  canonical orientation.  (When D == 1, finding that orientation
+     *  also costs more than it gains, so the position is keyed as it
+     *  stands; its key can then match only that of an identical board,
+     *  in any orientation.)  If the search is stopped, returns a
+     *  meaningless value.  The contents of my board are invariant over
+     *  this call.
+     *  @param player player to move
+     *  @param d depth
+     *  @param alpha lower edge of the window
+     *  @param beta upper edge of the window
+     *  @param ply distance from the root
+     *  @return value of my board for PLAYER
+     */
+    int search(Side player, int d, int alpha, int beta, int ply) {
+        Board b = _board;
+        _nodes += 1;
+        _stats.countNode();
+        if (_nodes % CLOCK_INTERVAL == 0) {
+            _ai.checkClock();
+        }
+        if (_ai.stopped()) {
+            return 0;
+        }
+        if (b.getWinner() != null) {
+            return -AI.WINNING_VALUE + ply;
+        }
+        if (d == 0) {
+            return staticEval(player, b);
+        }
+        TranspositionTable table = _ai.table();
+        int orientation = d > 1 ? b.orientation() : Symmetry.IDENTITY;
+        long key = b.positionKey(orientation);
+        long entry = table.probe(key);
+        _stats.countProbe(entry != MISSING);
+        if (entry != MISSING && depth(entry) == d) {
+            int score = fromTable(score(entry), ply);
+            switch (bound(entry)) {
+            case EXACT:
+                return score;
+            case LOWER:
+                alpha = Math.max(alpha, score);
+                break;
+            default:
+                beta = Math.min(beta, score);
+                break;
+            }
+            if (alpha >= beta) {
+                return score;
+            }
+        }
+        int[] moves = moveBuffer(ply);
+        int numMoves = generateMoves(player, b, moves);
+        int first = entry != MISSING && move(entry) != -1
+            ? _symmetry.preimage(orientation, move(entry)) : -1;
+        if (_ai.ordering() && d > 1) {
+            orderMoves(player, moves, numMoves, first, ply);
+        } else {
+            moveToFront(first, moves, numMoves);
+        }
+        int alpha0 = alpha;
+        int best = -AI.INFINITY;
+        int bestHere = -1;
+        for (int k = 0; k < numMoves; k += 1) {
+            int m = moves[k];
+            b.addSpot(player, m);
+            _stats.countMove(_board.cascadeLength());
+            int value = -search(player.opposite(), d - 1, -beta, -alpha,
+                                ply + 1);
+            b.undo();
+            if (_ai.stopped()) {
+                return 0;
+            }
+            if (value > best) {
+                best = value;
+                bestHere = m;
+                if (best > alpha) {
+                    alpha = best;
+                    if (alpha >= beta) {
+                        _stats.countCutoff();
+                        recordCutoff(player, m, d, ply);
+                        break;
+                    }
+                }
+            }
+        }
+        int bound = best <= alpha0 ? UPPER : best >= beta ? LOWER : EXACT;
+        table.store(key, d, toTable(best, ply), bound,
+                    _symmetry.image(orientation, bestHere));
+        return best;
+    }
+
+    /** Put the first NUMMOVES entries of MOVES, the moves of PLAYER at
+     *  distance PLY from the root, in the order in which they are to be
+     *  searched: FIRST (the move from the transposition table, or -1),
+     *  then captures, then other moves that cause explosions, then the
+     *  killer moves for PLY, then the rest, in decreasing order of
+     *  their history scores.  Ties go to the lower-numbered square. */
+    private void orderMoves(Side player, int[] moves, int numMoves,
+                            int first, int ply) {
+        Board b = _board;
+        int[] history = _history[player.ordinal()];
+        int[] killers = _killers[ply];
+        long[] keys = _keys;
+        for (int k = 0; k < numMoves; k += 1) {
+            int m = moves[k];
+            int score;
+            if (m == first) {
+                score = FIRST_SCORE;
+            } else if (m == killers[0]) {
+                score = KILLER_SCORE + 1;
+            } else if (m == killers[1]) {
+                score = KILLER_SCORE;
+            } else {
+                score = history[m];
+            }
+            if (score < CASCADE_SCORE) {
+                score = Math.max(score,
+                                 tacticalScore(player, b, _adjacency, m));
+            }
+            keys[k] = ((long) -score << SCORE_SHIFT) | m;
+        }
+        sortKeys(keys, numMoves);
+        for (int k = 0; k < numMoves; k += 1) {
+            moves[k] = (int) (keys[k] & MOVE_MASK);
+        }
+    }
+
+    /** Record that move M by PLAYER, D plies from the horizon and PLY
+     *  from the root, caused a cutoff.  Unless M is a capture or causes
+     *  an explosion (which are tried early in any case), make it the
+     *  first killer move for PLY and credit it in PLAYER's history. */
+    private void recordCutoff(Side player, int m, int d, int ply) {
+        if (tacticalScore(player, _board, _adjacency, m) != 0) {
+            return;
+        }
+        int[] killers = _killers[ply];
+        if (killers[0] != m) {
+            killers[1] = killers[0];
+            killers[0] = m;
+        }
+        int[] history = _history[player.ordinal()];
+        history[m] += d * d;
+        if (history[m] >= HISTORY_LIMIT) {
+            ageHistory();
+        }
+    }
+
+    /** Halve all history scores. */
+    private void ageHistory() {
+        for (int[] history : _history) {
+            for (int i = 0; i < history.length; i += 1) {
+                history[i] >>= 1;
+            }
+        }
+    }
+
+    /** Return CAPTURE_SCORE if a move by PLAYER on square #N of board B
+     *  would explode it next to a square of the opponent, CASCADE_SCORE if
+     *  it would explode it otherwise, and 0 if it would cause no
+     *  explosion.  ADJACENCY is the neighbor structure of B. */
+    static int tacticalScore(Side player, Board b, Adjacency adjacency,
+                             int n) {
+        if (b.spots(n) < adjacency.count(n)) {
+            return 0;
+        }
+        Side opponent = player.opposite();
+        int last = adjacency.first(n + 1);
+        for (int j = adjacency.first(n); j < last; j += 1) {
+            if (b.side(adjacency.neighbor(j)) == opponent) {
+                return CAPTURE_SCORE;
+            }
+        }
+        return CASCADE_SCORE;
+    }
+
+    /** Sort the first NUMKEYS entries of KEYS into ascending order, in
+     *  place (heapsort). */
+    private static void sortKeys(long[] keys, int numKeys) {
+        for (int k = numKeys / 2 - 1; k >= 0; k -= 1) {
+            siftDown(keys, k, keys[k], numKeys);
+        }
+        for (int end = numKeys - 1; end > 0; end -= 1) {
+            long last = keys[end];
+            keys[end] = keys[0];
+            siftDown(keys, 0, last, end);
+        }
+    }
+
+    /** Place KEY, which replaces KEYS[K], in its proper position in the
+     *  max-heap formed by the first SIZE entries of KEYS. */
+    private static void siftDown(long[] keys, int k, long key, int size) {
+        while (2 * k + 1 < size) {
+            int child = 2 * k + 1;
+            if (child + 1 < size && keys[child + 1] > keys[child]) {
+                child += 1;
+            }
+            if (keys[child] <= key) {
+                break;
+            }
+            keys[k] = keys[child];
+            k = child;
+        }
+        keys[k] = key;
+    }
+
+    /** Return SCORE, found PLY plies from the root, in the form stored
+     *  in the transposition table, where winning and losing scores are
+     *  measured from the position itself rather than from the root. */
+    private static int toTable(int score, int ply) {
+        if (score > AI.WINNING_VALUE - AI.MAX_PLY) {
+            return score + ply;
+        } else if (score < -AI.WINNING_VALUE + AI.MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    /** Return the score of a position PLY plies from the root whose
+     *  transposition-table score is SCORE.  Inverse of toTable. */
+    private static int fromTable(int score, int ply) {
+        if (score > AI.WINNING_VALUE - AI.MAX_PLY) {
+            return score - ply;
+        } else if (score < -AI.WINNING_VALUE + AI.MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    /** Returns heuristic value of board B for player P.
+     *  Higher is better for P.  This is the share of the board's spots
+     *  that P's squares represent, as in the original evaluation, less
+     *  the opponent's share, so that the value for one player is the
+     *  negation of that for the other (as negamax requires).  Once every
+     *  square is owned, it is 2 * share - 1, and ranks positions just as
+     *  the share does.  It is scaled by EVAL_SCALE.
+     *  @param player current player
+     *  @param b current board
+     *  @return return evaluation of the board
+     */
+    static int staticEval(Side player, Board b) {
+        int margin = b.numOfSide(player) - b.numOfSide(player.opposite());
+        return EVAL_SCALE * margin / b.numPieces();
+    }
+
+    /** Store the squares on which PLAYER may move on board B, in
+     *  increasing order, at the start of MOVES, and return their number.
+     *  When the position on B is symmetric (see Board.symmetries), only
+     *  the lowest-numbered of the squares that its symmetries carry
+     *  onto one another is stored, since moves on the others lead to
+     *  images of the same position.  MOVES must have room for every
+     *  square of B. */
+    static int generateMoves(Side player, Board b, int[] moves) {
+        int boardSize = b.size() * b.size();
+        Side opponent = player.opposite();
+        int symmetries = b.symmetries();
+        Symmetry symmetry =
+            symmetries == 1 << Symmetry.IDENTITY ? null
+            : Symmetry.forSize(b.size());
+        int numMoves = 0;
+        for (int i = 0; i < boardSize; i += 1) {
+            if (b.side(i) != opponent
+                && (symmetry == null || symmetry.isLeast(i, symmetries))) {
+                moves[numMoves] = i;
+                numMoves += 1;
+            }
+        }
+        return numMoves;
+    }
+
+    /** Move square #MOVE, if it is among the first NUMMOVES entries of
+     *  MOVES, to the front of MOVES, preserving the order of the
+     *  others. */
+    static void moveToFront(int move, int[] moves, int numMoves) {
+        for (int k = 0; k < numMoves; k += 1) {
+            if (moves[k] == move) {
+                System.arraycopy(moves, 0, moves, 1, k);
+                moves[0] = move;
+                return;
+            }
+        }
+    }
+
+    /** Return my buffer for the moves generated at distance PLY from the
+     *  root, creating it (and the killer moves for PLY) if this is the
+     *  first search on a board of this size to reach PLY. */
+    private int[] moveBuffer(int ply) {
+        if (ply >= _moves.length) {
+            int plies = Math.max(ply + 1, 2 * _moves.length);
+            _moves = Arrays.copyOf(_moves, plies);
+            _killers = Arrays.copyOf(_killers, plies);
+        }
+        if (_moves[ply] == null) {
+            _moves[ply] = new int[_board.size() * _board.size()];
+            _killers[ply] = new int[] { -1, -1 };
+        }
+        return _moves[ply];
+    }
+
+    /** Number of nodes between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 1024;
+
+    /** Number of plies for which move buffers are initially provided. */
+    private static final int INITIAL_PLIES = 16;
+
+    /** Value of staticEval for a player owning every square. */
+    static final int EVAL_SCALE = 10000;
+    /** Ordering score of the move from the transposition table. */
+    private static final int FIRST_SCORE = 1 << 30;
+    /** Ordering score of a capture. */
+    static final int CAPTURE_SCORE = 1 << 29;
+    /** Ordering score of a move that causes an explosion but is not a
+     *  capture. */
+    static final int CASCADE_SCORE = 1 << 28;
+    /** Ordering score of the second killer move (the first gets one
+     *  more). */
+    private static final int KILLER_SCORE = 1 << 27;
+    /** History scores are halved when one reaches this value, keeping
+     *  them below KILLER_SCORE. */
+    private static final int HISTORY_LIMIT = 1 << 26;
+    /** Position of the negated ordering score in a sort key. */
+    private static final int SCORE_SHIFT = 32;
+    /** Mask for the move in a sort key. */
+    private static final long MOVE_MASK = 0xffffffffL;
+
+    /** The AI for which I search. */
+    private final AI _ai;
+    /** My copy of the position being searched. */
+    private MutableBoard _board;
+    /** Number of the search whose root position _board holds. */
+    private int _searchNum;
+    /** Total number of nodes visited, which paces checks of the
+     *  clock. */
+    private long _nodes;
+    /** Statistics of my searches since they were last cleared. */
+    private final SearchStats _stats = new SearchStats();
+    /** _moves[p] holds the moves generated at distance p from the root,
+     *  for boards of my board's size (null until first needed). */
+    private int[][] _moves;
+    /** _killers[p] holds the two most recent moves (-1 if none) other
+     *  than captures and explosions to cause cutoffs at distance p from
+     *  the root, most recent first (null until first needed). */
+    private int[][] _killers;
+    /** _history[s][n] measures how often and how deep a move by the Side
+     *  with ordinal s on square #n has caused cutoffs. */
+    private int[][] _history;
+    /** Scratch space for sorting moves. */
+    private long[] _keys;
+    /** Neighbor structure of my board. */
+    private Adjacency _adjacency;
+    /** Symmetries of my board. */
+    private Symmetry _symmetry;
+}
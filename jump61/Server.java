@@ -0,0 +1,651 @@
+package jump61;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import ucb.util.CommandArgs;
+
+/** A server hosting many sessions of Jump61 at once, one to each
+ *  connection on a local TCP port or Unix-domain socket.  Each session
+ *  is a separate Game, using the same commands and output as one on the
+ *  console, prompts included.  A single thread does all the network
+ *  I/O, without blocking, and hands the input of each connection to its
+ *  Game, which runs on a thread of its own (with a small stack) and
+ *  blocks only while waiting for it.  Moves of automated players are
+ *  scheduled by a SearchScheduler shared by all sessions, so that
+ *  searches cannot take more processors than are allotted to them, each
+ *  waits its turn, those of sessions against a human go first, and all
+ *  get shorter as the load grows.  Transposition tables are smaller
+ *  than on the console, no larger than the operator allows, and are
+ *  created only for sessions with automated players.  Sessions are
+ *  restricted (see Game.restrict) to single-threaded searches without
+ *  pondering, so that no search escapes the scheduler.  A session
+ *  ends when its Game does, when its client closes the connection, or
+ *  when there has been no traffic on it for a time.
+ *  @author Dasheng Chen
+ */
+public class Server {
+
+    /** Options accepted by main. */
+    private static final String OPTIONS =
+        "--port=(\\d+){0,1} --socket=(.+){0,1} --sessions=(\\d+){0,1} "
+        + "--searchers=(\\d+){0,1} --idle=(\\d+){0,1} --table=(\\d+){0,1} "
+        + "--time=(\\d+){0,1} --slice=(\\d+){0,1} --report=(\\d+){0,1} "
+        + "--binary=(.+){0,1}";
+
+    /** Usage message for main. */
+    private static final String USAGE =
+        "Usage: java jump61.Server [ --port=N | --socket=FILE ]"
+        + " [ --sessions=N ]\n"
+        + "           [ --searchers=N ] [ --idle=SECONDS ] [ --table=N ]"
+        + " [ --time=MILLIS ]\n"
+        + "           [ --slice=MILLIS ] [ --report=SECONDS ]"
+        + " [ --binary=FILE ]\n"
+        + "  --port:      Local TCP port on which to listen (default"
+        + " 6161).\n"
+        + "  --socket:    Unix-domain socket on which to listen instead"
+        + " (replacing\n"
+        + "               any existing FILE).\n"
+        + "  --sessions:  Maximum number of sessions at once (default"
+        + " 1000).\n"
+        + "  --searchers: Maximum number of automated moves searched at"
+        + " once\n"
+        + "               (default: one per processor).\n"
+        + "  --slice:     Longest time for an automated move, waiting"
+        + " included;\n"
+        + "               shortened under load (default 5000).\n"
+        + "  --report:    Print the state of the search scheduler every"
+        + " SECONDS.\n"
+        + "  --idle:      Seconds without traffic after which a session"
+        + " is closed\n"
+        + "               (default 600).\n"
+        + "  --table:     Initial and largest setting of the command"
+        + " 'table' in\n"
+        + "               each session (default 14).\n"
+        + "  --time:      Initial setting of the command 'time' in each"
+        + " session\n"
+        + "               (default 0).\n"
+        + "  --binary:    File to which to append a binary record of each"
+        + " game\n"
+        + "               (see GameRecordWriter).  Sessions may not use"
+        + " 'record'\n"
+        + "               or 'tablebases'.\n";
+
+    /** Default longest time slice of an automated move (milliseconds),
+     *  which is roughly the longest a move should take to come back. */
+    private static final long SLICE = 5000;
+    /** Shortest time slice of an automated move (milliseconds). */
+    private static final long MIN_SLICE = 100;
+    /** Default TCP port. */
+    private static final int PORT = 6161;
+    /** Default maximum number of sessions. */
+    private static final int SESSIONS = 1000;
+    /** Default idle time before a session is closed (seconds). */
+    private static final int IDLE = 600;
+    /** Default size of the transposition table of each session (log2 of
+     *  the number of entries), much smaller than on the console, since
+     *  there may be hundreds of sessions. */
+    private static final int TABLE_LOG_SIZE = 14;
+    /** Stack size of the thread running each session (bytes). */
+    private static final long SESSION_STACK_SIZE = 1 << 18;
+    /** Size of the buffer into which each connection is read (bytes). */
+    private static final int READ_BUFFER_SIZE = 1024;
+    /** Number of characters of unread input, and of bytes of unsent
+     *  output, that a session may have pending before its reading from
+     *  the network, or its writing of output, is held up. */
+    private static final int MAX_PENDING = 1 << 16;
+    /** Longest wait for network activity before checking for idle
+     *  sessions (milliseconds). */
+    private static final long SELECT_TIMEOUT = 1000;
+    /** Message sent to connections refused because there are too many
+     *  sessions. */
+    private static final String FULL = "Error: server is full\n";
+
+    /** Serve sessions as directed by the options in ARGS0 (see USAGE)
+     *  until killed. */
+    public static void main(String... args0) {
+        CommandArgs args = new CommandArgs(OPTIONS, args0);
+        if (!args.ok()) {
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+        try {
+            Server server = new Server(args);
+            String binary = args.getFirst("--binary");
+            GameRecordWriter recorder = null;
+            if (binary != null) {
+                recorder = GameRecordWriter.open(new File(binary));
+                server.setRecorder(recorder);
+            }
+            System.out.printf("Serving %s on %s%n", Defaults.VERSION,
+                              server.bind());
+            try {
+                server.run();
+            } finally {
+                if (recorder != null) {
+                    recorder.close();
+                }
+            }
+        } catch (NumberFormatException excp) {
+            System.err.printf("Error: bad number: %s%n", excp.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException | IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A server configured by ARGS (see USAGE). */
+    Server(CommandArgs args) {
+        this(option(args, "--socket", null),
+             (int) option(args, "--port", PORT),
+             (int) option(args, "--sessions", SESSIONS),
+             (int) option(args, "--searchers",
+                          Runtime.getRuntime().availableProcessors()),
+             option(args, "--idle", IDLE) * 1000,
+             (int) option(args, "--table", TABLE_LOG_SIZE),
+             option(args, "--time", Defaults.MOVE_TIME),
+             option(args, "--slice", SLICE));
+        _report = option(args, "--report", 0) * 1000;
+    }
+
+    /** A server listening on the Unix-domain socket SOCKET, or if that is
+     *  null, on local TCP port PORT (any free port if 0).  It serves at
+     *  most SESSIONS sessions at once, of which at most SEARCHERS may be
+     *  searching for a move at once, for at most SLICE milliseconds each,
+     *  and closes sessions that have seen no traffic for IDLE
+     *  milliseconds.  Each session initially has a transposition table
+     *  of 2**TABLELOGSIZE entries and a time budget per automated move
+     *  of MOVETIME milliseconds (see Game). */
+    Server(String socket, int port, int sessions, int searchers, long idle,
+           int tableLogSize, long moveTime, long slice) {
+        if (sessions < 1 || searchers < 1 || idle < 1
+            || slice < MIN_SLICE) {
+            throw new IllegalArgumentException("need at least one session,"
+                                               + " searcher, and second,"
+                                               + " and a slice of at least "
+                                               + MIN_SLICE + " ms");
+        }
+        if (tableLogSize > TranspositionTable.MAX_LOG_SIZE) {
+            throw new IllegalArgumentException("table too large");
+        }
+        _socket = socket;
+        _port = port;
+        _maxSessions = sessions;
+        _scheduler = new SearchScheduler(searchers, slice, MIN_SLICE);
+        _idle = idle;
+        _tableLogSize = tableLogSize;
+        _moveTime = moveTime;
+    }
+
+    /** Record each game played in my sessions from now on with
+     *  RECORDER, which the caller must close, or with none if RECORDER
+     *  is null.  Sessions cannot record games themselves (see
+     *  Game.restrict). */
+    void setRecorder(GameRecordWriter recorder) {
+        _recorder = recorder;
+    }
+
+    /** Return the value of option KEY in ARGS, or DEFLT if absent. */
+    private static long option(CommandArgs args, String key, long deflt) {
+        String value = args.getFirst(key);
+        return value == null ? deflt : Long.parseLong(value);
+    }
+
+    /** Return the value of option KEY in ARGS, or DEFLT if absent. */
+    private static String option(CommandArgs args, String key,
+                                 String deflt) {
+        String value = args.getFirst(key);
+        return value == null ? deflt : value;
+    }
+
+    /** Start listening for connections, and return the address on which
+     *  I listen. */
+    SocketAddress bind() throws IOException {
+        _selector = Selector.open();
+        if (_socket != null) {
+            Path path = Path.of(_socket);
+            Files.deleteIfExists(path);
+            _listener = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            _listener.bind(UnixDomainSocketAddress.of(path));
+        } else {
+            _listener = ServerSocketChannel.open();
+            _listener.bind(new InetSocketAddress(InetAddress
+                                                 .getLoopbackAddress(),
+                                                 _port));
+        }
+        _listener.configureBlocking(false);
+        _listener.register(_selector, SelectionKey.OP_ACCEPT);
+        return _listener.getLocalAddress();
+    }
+
+    /** Serve sessions until stop is called, then close all connections.
+     *  Requires that I be bound. */
+    void run() throws IOException {
+        try {
+            while (!_stopped) {
+                _selector.select(SELECT_TIMEOUT);
+                for (SelectionKey key : _selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    } else if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Session session = (Session) key.attachment();
+                    if (key.isReadable()) {
+                        session.receive();
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        session.send();
+                    }
+                }
+                _selector.selectedKeys().clear();
+                for (Session session = _changed.poll(); session != null;
+                     session = _changed.poll()) {
+                    session.update();
+                }
+                sweep();
+                report();
+            }
+        } finally {
+            for (Session session : _sessions) {
+                session.close();
+            }
+            _sessions.clear();
+            _listener.close();
+            _selector.close();
+            if (_socket != null) {
+                Files.deleteIfExists(Path.of(_socket));
+            }
+        }
+    }
+
+    /** Cause run to return soon.  May be called from any thread. */
+    void stop() {
+        _stopped = true;
+        _selector.wakeup();
+    }
+
+    /** Return the number of sessions now open. */
+    int sessions() {
+        return _numSessions;
+    }
+
+    /** Return the scheduler of searches in my sessions. */
+    SearchScheduler scheduler() {
+        return _scheduler;
+    }
+
+    /** Accept a pending connection, if any, and start a session on it,
+     *  or refuse it if there are too many sessions. */
+    private void accept() throws IOException {
+        SocketChannel channel = _listener.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        if (_sessions.size() >= _maxSessions) {
+            channel.write(StandardCharsets.UTF_8.encode(FULL));
+            channel.close();
+            return;
+        }
+        Session session = new Session(channel);
+        _sessions.add(session);
+        _numSessions = _sessions.size();
+        session.start();
+    }
+
+    /** Drop sessions that are closed from _sessions, and close those
+     *  that have been idle too long. */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Session> i = _sessions.iterator(); i.hasNext(); ) {
+            Session session = i.next();
+            if (!session.isClosed() && now - session.lastActive() > _idle) {
+                session.close();
+            }
+            if (session.isClosed()) {
+                i.remove();
+            }
+        }
+        _numSessions = _sessions.size();
+    }
+
+    /** Print the number of sessions and the state of the scheduler, if
+     *  reports are wanted and one is due. */
+    private void report() {
+        long now = System.currentTimeMillis();
+        if (_report > 0 && now >= _lastReport + _report) {
+            _lastReport = now;
+            System.out.printf("sessions=%d %s%n", _numSessions,
+                              _scheduler.toRecord());
+            System.out.flush();
+        }
+    }
+
+    /** Arrange for SESSION's interest in network events to be brought up
+     *  to date by the network thread.  May be called from any thread. */
+    private void changed(Session session) {
+        _changed.add(session);
+        _selector.wakeup();
+    }
+
+    /** One connection and the Game played over it.  Its fields other
+     *  than those guarded by its lock are used only by the network
+     *  thread. */
+    private class Session implements Runnable {
+
+        /** A session on CHANNEL. */
+        Session(SocketChannel channel) {
+            _channel = channel;
+            _decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            _readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            _lastActive = System.currentTimeMillis();
+            Writer output = new Output();
+            _game = new Game(new Input(), output, output, output);
+            _game.setTableSize(_tableLogSize);
+            _game.restrict(_tableLogSize);
+            _game.setMoveTime(_moveTime);
+            _game.setScheduler(_scheduler);
+            _game.setRecorder(_recorder);
+        }
+
+        /** Start reading my connection, and playing my Game on a thread
+         *  of its own. */
+        void start() throws IOException {
+            _key = _channel.register(_selector, SelectionKey.OP_READ, this);
+            _sessionCount += 1;
+            Thread thread = new Thread(null, this,
+                                       "jump61-session-" + _sessionCount,
+                                       SESSION_STACK_SIZE);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                _game.play();
+            } finally {
+                synchronized (this) {
+                    _finished = true;
+                }
+                changed(this);
+            }
+        }
+
+        /** Read what is available from my connection, and pass it on to
+         *  my Game. */
+        void receive() {
+            int n;
+            try {
+                n = _channel.read(_readBuffer);
+            } catch (IOException excp) {
+                close();
+                return;
+            }
+            _lastActive = System.currentTimeMillis();
+            _readBuffer.flip();
+            CharBuffer chars =
+                CharBuffer.allocate(_readBuffer.remaining() + 1);
+            _decoder.decode(_readBuffer, chars, n < 0);
+            _readBuffer.compact();
+            chars.flip();
+            synchronized (this) {
+                _input.append(chars);
+                if (n < 0) {
+                    _inputEnded = true;
+                }
+                notifyAll();
+            }
+            update();
+        }
+
+        /** Write as much of my pending output as my connection will
+         *  take. */
+        void send() {
+            try {
+                synchronized (this) {
+                    while (!_output.isEmpty()) {
+                        ByteBuffer buffer = _output.peek();
+                        _outputSize -= _channel.write(buffer);
+                        if (buffer.hasRemaining()) {
+                            break;
+                        }
+                        _output.poll();
+                    }
+                    notifyAll();
+                }
+            } catch (IOException excp) {
+                close();
+                return;
+            }
+            _lastActive = System.currentTimeMillis();
+            update();
+        }
+
+        /** Bring my interest in network events up to date, closing my
+         *  connection if my Game is over and all its output sent. */
+        void update() {
+            if (isClosed()) {
+                return;
+            }
+            int ops = 0;
+            synchronized (this) {
+                if (_finished && _output.isEmpty()) {
+                    close();
+                    return;
+                }
+                if (!_inputEnded && _input.length() < MAX_PENDING) {
+                    ops |= SelectionKey.OP_READ;
+                }
+                if (!_output.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+            }
+            _key.interestOps(ops);
+        }
+
+        /** Close my connection, ending my Game's input and discarding
+         *  its further output. */
+        void close() {
+            synchronized (this) {
+                _closed = true;
+                _inputEnded = true;
+                _output.clear();
+                notifyAll();
+            }
+            if (_key != null) {
+                _key.cancel();
+            }
+            try {
+                _channel.close();
+            } catch (IOException excp) {
+                return;
+            }
+        }
+
+        /** Return true iff I have been closed. */
+        synchronized boolean isClosed() {
+            return _closed;
+        }
+
+        /** Return the time of the last traffic on my connection
+         *  (milliseconds). */
+        long lastActive() {
+            return _lastActive;
+        }
+
+        /** The input of my Game: what has been read from my connection. */
+        private class Input extends Reader {
+
+            @Override
+            public int read(char[] cbuf, int off, int len) {
+                synchronized (Session.this) {
+                    while (_input.length() == 0 && !_inputEnded) {
+                        try {
+                            Session.this.wait();
+                        } catch (InterruptedException excp) {
+                            Thread.currentThread().interrupt();
+                            return -1;
+                        }
+                    }
+                    if (_input.length() == 0) {
+                        return -1;
+                    }
+                    boolean full = _input.length() >= MAX_PENDING;
+                    int n = Math.min(len, _input.length());
+                    _input.getChars(0, n, cbuf, off);
+                    _input.delete(0, n);
+                    if (full && _input.length() < MAX_PENDING) {
+                        changed(Session.this);
+                    }
+                    return n;
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        }
+
+        /** The output of my Game (prompts and errors included), which is
+         *  sent on my connection as it is flushed.  Flushing waits while
+         *  too much output is already waiting to be sent. */
+        private class Output extends Writer {
+
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                _text.append(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() {
+                if (_text.length() == 0) {
+                    return;
+                }
+                ByteBuffer bytes =
+                    StandardCharsets.UTF_8.encode(CharBuffer.wrap(_text));
+                _text.setLength(0);
+                synchronized (Session.this) {
+                    while (_outputSize >= MAX_PENDING && !_closed) {
+                        try {
+                            Session.this.wait();
+                        } catch (InterruptedException excp) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                    if (_closed) {
+                        return;
+                    }
+                    _output.add(bytes);
+                    _outputSize += bytes.remaining();
+                }
+                changed(Session.this);
+            }
+
+            @Override
+            public void close() {
+                flush();
+            }
+
+            /** Output not yet flushed. */
+            private final StringBuilder _text = new StringBuilder();
+        }
+
+        /** My connection. */
+        private final SocketChannel _channel;
+        /** The registration of _channel with _selector. */
+        private SelectionKey _key;
+        /** Decoder of the input from _channel. */
+        private final CharsetDecoder _decoder;
+        /** Input from _channel not yet decoded. */
+        private final ByteBuffer _readBuffer;
+        /** The Game played over _channel. */
+        private final Game _game;
+        /** Time of the last traffic on _channel (milliseconds). */
+        private volatile long _lastActive;
+
+        /* The remaining fields are guarded by my lock. */
+
+        /** Input decoded, but not yet read by _game. */
+        private final StringBuilder _input = new StringBuilder();
+        /** True iff there will be no more input. */
+        private boolean _inputEnded;
+        /** Output from _game not yet sent, in order. */
+        private final ArrayDeque<ByteBuffer> _output =
+            new ArrayDeque<ByteBuffer>();
+        /** Total number of bytes in _output. */
+        private int _outputSize;
+        /** True iff _game is over. */
+        private boolean _finished;
+        /** True iff I have been closed. */
+        private boolean _closed;
+    }
+
+    /** Unix-domain socket on which to listen, or null for TCP. */
+    private final String _socket;
+    /** TCP port on which to listen (0 for any). */
+    private final int _port;
+    /** Maximum number of sessions at once. */
+    private final int _maxSessions;
+    /** Scheduler of automated moves, shared by all sessions. */
+    private final SearchScheduler _scheduler;
+    /** Time without traffic after which a session is closed
+     *  (milliseconds). */
+    private final long _idle;
+    /** Initial log size of each session's transposition table. */
+    private final int _tableLogSize;
+    /** Initial time budget per automated move (milliseconds). */
+    private final long _moveTime;
+    /** Writer of records of all sessions' games, or null for none. */
+    private GameRecordWriter _recorder;
+    /** Interval between reports of the state of _scheduler
+     *  (milliseconds), or 0 for none. */
+    private long _report;
+    /** Time of the last report (milliseconds). */
+    private long _lastReport;
+
+    /** Selector for all network events. */
+    private Selector _selector;
+    /** Channel on which connections are accepted. */
+    private ServerSocketChannel _listener;
+    /** Open sessions (used only by the network thread). */
+    private final List<Session> _sessions = new ArrayList<Session>();
+    /** Number of open sessions, as of the last sweep. */
+    private volatile int _numSessions;
+    /** Number of sessions started so far. */
+    private int _sessionCount;
+    /** Sessions whose interest in network events may have changed. */
+    private final ConcurrentLinkedQueue<Session> _changed =
+        new ConcurrentLinkedQueue<Session>();
+    /** Set when run is to return. */
+    private volatile boolean _stopped;
+}
@@ -0,0 +1,164 @@
+package jump61;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Unit tests of Servers.
+ *  @author Dasheng Chen
+ */
+public class ServerTest {
+
+    /** Return a server with room for SESSIONS sessions, started on a
+     *  thread of its own. */
+    private static Server start(int sessions) throws IOException {
+        return start(sessions, null);
+    }
+
+    /** Return a server with room for SESSIONS sessions, recording their
+     *  games with RECORDER (if not null), started on a thread of its
+     *  own. */
+    private static Server start(int sessions, GameRecordWriter recorder)
+        throws IOException {
+        Server server = new Server(null, 0, sessions, 2, 60000, 10, 0,
+                                   1000);
+        server.setRecorder(recorder);
+        _address = (InetSocketAddress) server.bind();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.run();
+                } catch (IOException excp) {
+                    return;
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return server;
+    }
+
+    /** Return a new connection to the last server started. */
+    private static Socket connect() throws IOException {
+        return new Socket(_address.getAddress(), _address.getPort());
+    }
+
+    /** Send SCRIPT on CONNECTION, and return all that comes back until
+     *  the server closes it. */
+    private static String session(Socket connection, String script)
+        throws IOException {
+        connection.getOutputStream()
+            .write(script.getBytes(StandardCharsets.UTF_8));
+        connection.getOutputStream().flush();
+        InputStream inp = connection.getInputStream();
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int n = inp.read(buffer); n >= 0; n = inp.read(buffer)) {
+            result.write(buffer, 0, n);
+        }
+        connection.close();
+        return result.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSessions() throws IOException {
+        Server server = start(4);
+        try {
+            Socket first = connect(), second = connect();
+            String played =
+                session(first, "size 2\nauto red\nauto blue\nstart\n"
+                        + "dump\nquit\n");
+            String manual = session(second, "1 1\nstart\n1 1\ndump\nquit\n");
+            assertTrue(played.startsWith("Welcome to " + Defaults.VERSION));
+            assertTrue(played.contains("Red moves"));
+            assertTrue(played.contains(" wins."));
+            assertTrue(manual.contains("Error: no game in progress"));
+            assertTrue(manual.contains("red> "));
+            assertTrue(manual.contains("Blue moves"));
+            assertTrue(manual.contains("===\n    2r 1- "));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testRestricted() throws IOException {
+        Server server = start(1);
+        try {
+            String output =
+                session(connect(), "table 11\ntable 10\nthreads 4\n"
+                        + "threads 1\nponder on\nponder off\nquit\n");
+            assertEquals(3, output.split("Error: ", -1).length - 1);
+            assertTrue(output.contains("Error: Requires 0 <= N <= 10."));
+            assertTrue(output.contains("Error: Requires 1 <= N <= 1."));
+            assertTrue(output.contains("Error: pondering is not allowed"));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testFormatsInInput() throws IOException {
+        Server server = start(1);
+        try {
+            String output =
+                session(connect(), "%s\n%d %n\nsize 2\nauto red\n"
+                        + "auto blue\nstart\nquit\n");
+            assertTrue(output.contains("Error: bad command: '%s'"));
+            assertTrue(output.contains("Error: bad command: '%d'"));
+            assertTrue(output.contains(" wins."));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testRecorded() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GameRecordWriter recorder = new GameRecordWriter(bytes, false);
+        Server server = start(1, recorder);
+        File file = new File("jump61-server-test.rec");
+        try {
+            String output =
+                session(connect(), "record " + file + "\ntablebases /\n"
+                        + "size 2\nauto red\nauto blue\nstart\nquit\n");
+            assertTrue(output.contains("Error: 'record' is not allowed"));
+            assertTrue(output.contains("Error: 'tablebases' is not allowed"));
+            assertFalse(file.exists());
+        } finally {
+            server.stop();
+        }
+        recorder.close();
+        GameRecordReader inp =
+            new GameRecordReader(new ByteArrayInputStream(bytes
+                                                          .toByteArray()));
+        assertTrue(inp.next());
+        assertEquals(2, inp.size());
+        assertFalse(inp.next());
+    }
+
+    @Test
+    public void testFull() throws IOException {
+        Server server = start(1);
+        try {
+            Socket first = connect();
+            first.getInputStream().read();
+            assertEquals("Error: server is full\n", session(connect(), ""));
+            assertTrue(session(first, "quit\n").contains("> "));
+        } finally {
+            server.stop();
+        }
+    }
+
+    /** Address of the last server started. */
+    private static InetSocketAddress _address;
+}
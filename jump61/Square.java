@@ -13,20 +13,25 @@ class Square {
     private Square(Side side, int spots) {
         _side = side;
         _spots = spots;
+        char letter = '-';
+        if (side != WHITE) {
+            letter = side.toString().charAt(0);
+        }
+        _image = spots + "" + letter;
     }
 
     /** Return a (unique) Square controlled by SIDE with SPOTS spots on it.
-     *  We memoize the creation of Squares to save time, since they are
-     *  immutable objects.  As a special case, when SPOTS is 0 or SIDE
-     *  is WHITE, returns the value of INITIAL. */
+     *  Squares are immutable, so all of them are created once, when the
+     *  class is loaded, and shared by every board and thread.  As a
+     *  special case, when SPOTS is 0 or SIDE is WHITE, returns the value
+     *  of INITIAL.  Throws IllegalArgumentException unless
+     *  0 <= SPOTS <= MAX_SPOTS. */
     static Square square(Side side, int spots) {
-        if (spots == 0 || side == WHITE) {
-            return INITIAL;
-        }
-        if (_allSquares[side.ordinal()][spots] == null) {
-            _allSquares[side.ordinal()][spots] = new Square(side, spots);
+        if (spots < 0 || spots > MAX_SPOTS) {
+            throw new IllegalArgumentException("bad number of spots: "
+                                               + spots);
         }
-        return _allSquares[side.ordinal()][spots];
+        return _allSquares[side.ordinal() * (MAX_SPOTS + 1) + spots];
     }
 
     /** Return the Side controlling this Square. */
@@ -41,29 +46,52 @@ class Square {
 
     @Override
     public String toString() {
-        Side side = getSide();
-        char letter = '-';
-        if (!side.toString().equals("white")) {
-            letter = side.toString().charAt(0);
-        }
-        String output = this.getSpots() + "" + letter;
-        return output;
+        return _image;
     }
 
     /* Because there is only one Square with any particular contents, it is not
      * necessary to override .equals and .hashCode; the default implementations
      * work. */
 
-    /** Memo table for Squares, allowing spot values up to 9
-     *  (probably excessive). */
-    private static Square[][] _allSquares = new Square[3][10];
+    /** The largest number of neighbors of any square. */
+    static final int MAX_NEIGHBORS = 4;
+
+    /** The largest number of spots a square can hold.  A square explodes
+     *  at most once in each pass of a cascade (see CascadeQueue), and it
+     *  gains at most one spot from each of its neighbors in a pass, so
+     *  it can never hold more than one spot more than twice its
+     *  capacity, regardless of the size of the board. */
+    static final int MAX_SPOTS = 2 * MAX_NEIGHBORS + 1;
 
     /** A Square on the initial board. */
     static final Square INITIAL = new Square(Side.WHITE, 1);
 
+    /** All Squares, allowing spot values up to MAX_SPOTS:
+     *  _allSquares[SIDE.ordinal() * (MAX_SPOTS + 1) + SPOTS] is
+     *  square(SIDE, SPOTS).  It is filled in before any thread can see
+     *  it and never changed, so reading it needs no locking. */
+    private static final Square[] _allSquares = allSquares();
+
+    /** Return the contents of _allSquares. */
+    private static Square[] allSquares() {
+        Side[] sides = Side.values();
+        Square[] result = new Square[sides.length * (MAX_SPOTS + 1)];
+        for (Side side : sides) {
+            for (int spots = 0; spots <= MAX_SPOTS; spots += 1) {
+                result[side.ordinal() * (MAX_SPOTS + 1) + spots] =
+                    spots == 0 || side == WHITE ? INITIAL
+                    : new Square(side, spots);
+            }
+        }
+        return result;
+    }
+
     /** The Side occupying this Square. */
     private final Side _side;
 
     /** The number of spots in this Square. */
     private final int _spots;
+
+    /** My dumped representation. */
+    private final String _image;
 }
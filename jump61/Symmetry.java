@@ -0,0 +1,115 @@
+package jump61;
+
+import java.util.Arrays;
+
+/** The symmetries of an N x N board: the eight rotations and reflections
+ *  that carry the board onto itself, computed once per size and shared
+ *  by all boards of that size.  Symmetry #T (0 <= T < COUNT) transposes
+ *  the board if bit TRANSPOSE of T is set, and then reverses the order
+ *  of its rows and of its columns if bits FLIP_ROWS and FLIP_COLUMNS
+ *  are.  Symmetries preserve the neighbors of every square, so the
+ *  images of a position under them all have the same value, and the
+ *  images of a move in one are the corresponding moves in the others.
+ *  Symmetries are immutable once built.
+ *  @author Dasheng Chen
+ */
+class Symmetry {
+
+    /** Number of symmetries of a square board. */
+    static final int COUNT = 8;
+    /** The symmetry that leaves every square in place. */
+    static final int IDENTITY = 0;
+    /** Bit set in symmetries that transpose the board. */
+    static final int TRANSPOSE = 1;
+    /** Bit set in symmetries that reverse the order of the rows. */
+    static final int FLIP_ROWS = 2;
+    /** Bit set in symmetries that reverse the order of the columns. */
+    static final int FLIP_COLUMNS = 4;
+
+    /** The symmetries of an N x N board. */
+    private Symmetry(int N) {
+        _area = N * N;
+        _images = new int[COUNT * _area];
+        _preimages = new int[COUNT * _area];
+        for (int t = 0; t < COUNT; t += 1) {
+            for (int n = 0; n < _area; n += 1) {
+                int r = n / N, c = n % N;
+                if ((t & TRANSPOSE) != 0) {
+                    int x = r;
+                    r = c;
+                    c = x;
+                }
+                if ((t & FLIP_ROWS) != 0) {
+                    r = N - 1 - r;
+                }
+                if ((t & FLIP_COLUMNS) != 0) {
+                    c = N - 1 - c;
+                }
+                _images[t * _area + n] = r * N + c;
+                _preimages[t * _area + r * N + c] = n;
+            }
+        }
+    }
+
+    /** Return the (shared) symmetries of an N x N board.  Searches look
+     *  them up at every node, so symmetries already built are found
+     *  without locking. */
+    static Symmetry forSize(int N) {
+        Symmetry[] cache = _cache;
+        if (N < cache.length && cache[N] != null) {
+            return cache[N];
+        }
+        return build(N);
+    }
+
+    /** Return the (shared) symmetries of an N x N board, building them if
+     *  no other thread has. */
+    private static synchronized Symmetry build(int N) {
+        Symmetry[] cache = _cache;
+        if (N >= cache.length) {
+            cache = Arrays.copyOf(cache, N + 1);
+        }
+        if (cache[N] == null) {
+            cache[N] = new Symmetry(N);
+        }
+        _cache = cache;
+        return cache[N];
+    }
+
+    /** Return the number of the square to which symmetry #T carries
+     *  square #N. */
+    int image(int t, int n) {
+        return _images[t * _area + n];
+    }
+
+    /** Return the number of the square that symmetry #T carries to
+     *  square #N. */
+    int preimage(int t, int n) {
+        return _preimages[t * _area + n];
+    }
+
+    /** Return true iff square #N is the lowest-numbered of its images
+     *  under the symmetries in SYMMETRIES, a set of symmetries (as a bit
+     *  mask; see Board.symmetries) that includes IDENTITY. */
+    boolean isLeast(int n, int symmetries) {
+        for (int t = 0; t < COUNT; t += 1) {
+            if ((symmetries & (1 << t)) != 0 && image(t, n) < n) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Number of squares on my boards. */
+    private final int _area;
+    /** _images[T * _area + N] is image(T, N). */
+    private final int[] _images;
+    /** _preimages[T * _area + N] is preimage(T, N). */
+    private final int[] _preimages;
+
+    /** Symmetries already built, indexed by board size.  The fields of a
+     *  Symmetry are final, so a thread that finds one here sees it fully
+     *  built. */
+    private static volatile Symmetry[] _cache =
+        new Symmetry[Defaults.MAX_BOARD_SIZE + 1];
+}
@@ -0,0 +1,288 @@
+package jump61;
+
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** The exact value of every position reachable in games on boards of
+ *  one small size: whether the player to move wins with best play, and
+ *  in how many plies the game then ends (the winner hurrying, the loser
+ *  delaying).  A Tablebase is computed once, offline, by exhaustive
+ *  search (see main), and written to a file that later sessions map
+ *  into memory and probe in place.
+ *
+ *  A position is identified by its index: a mixed-radix number with
+ *  one digit per square, least significant first, whose digit for a
+ *  square with K neighbors is 0 for an initial square, S for a red
+ *  square with S spots, and K + S for a blue one.  Positions that are
+ *  images of one another under symmetries of the board (see Symmetry)
+ *  have the same value, so the table holds only one of each such set,
+ *  whose index is the least of theirs.  The file holds a header (MAGIC,
+ *  the board size, and the number of positions), the indices of all
+ *  positions in the table in increasing order (as ints), and then,
+ *  position by position, their values (as bytes).  Positions in which
+ *  the game is over are not included.
+ *  @author Dasheng Chen
+ */
+class Tablebase {
+
+    /** Largest board size whose position indices fit in an int.  (The
+     *  reachable positions of larger boards are also far too many to
+     *  enumerate: on 4x4, their number grows about fivefold per ply
+     *  for at least the first six plies.) */
+    static final int MAX_SIZE = 3;
+
+    /** Value returned by probe for positions not in the table. */
+    static final int MISSING = -1;
+
+    /** Tag identifying tablebase files ("J61S"). */
+    static final int MAGIC = 0x4a363153;
+
+    /** The tablebase contained in FILE.  Throws IOException if FILE
+     *  cannot be read or is not a tablebase. */
+    Tablebase(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            FileChannel channel = input.getChannel();
+            _data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                channel.size());
+        }
+        if (_data.limit() < HEADER_BYTES || _data.getInt(0) != MAGIC) {
+            throw new IOException("not a tablebase: " + file);
+        }
+        _size = _data.getInt(SIZE_OFFSET);
+        _count = _data.getInt(COUNT_OFFSET);
+        if (_size < 2 || _size > MAX_SIZE || _count < 0
+            || _data.limit() != HEADER_BYTES + 5L * _count) {
+            throw new IOException("damaged tablebase: " + file);
+        }
+        _values = HEADER_BYTES + 4 * _count;
+    }
+
+    /** Return the size of the boards I cover. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of positions I contain. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the value of board B for the player to move (see isWin and
+     *  distance), or MISSING if B is not in the table: if it is of the
+     *  wrong size, the game is over, or it is not reachable by play
+     *  from the initial position. */
+    int probe(Board b) {
+        if (b.size() != _size || b.getWinner() != null) {
+            return MISSING;
+        }
+        int index = index(b);
+        int lo = 0, hi = _count - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int key = _data.getInt(HEADER_BYTES + 4 * mid);
+            if (key < index) {
+                lo = mid + 1;
+            } else if (key > index) {
+                hi = mid - 1;
+            } else {
+                return _data.get(_values + mid) & BYTE_MASK;
+            }
+        }
+        return MISSING;
+    }
+
+    /** Return a best move for the player to move on board B, which
+     *  must be mutable, or -1 if B is not in the table.  The contents
+     *  of B are invariant over this call. */
+    int bestMove(Board b) {
+        if (probe(b) == MISSING) {
+            return -1;
+        }
+        Side player = b.whoseMove();
+        int best = -1, bestRank = Integer.MIN_VALUE;
+        for (int n = 0; n < _size * _size; n += 1) {
+            if (!b.isLegal(player, n)) {
+                continue;
+            }
+            b.addSpot(player, n);
+            int rank;
+            if (b.getWinner() != null) {
+                rank = Integer.MAX_VALUE;
+            } else {
+                int value = probe(b);
+                rank = isWin(value) ? distance(value) - LARGE
+                    : LARGE - distance(value);
+            }
+            b.undo();
+            if (rank > bestRank) {
+                best = n;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    /** Return true iff VALUE, found by probe, indicates a win for the
+     *  player to move. */
+    static boolean isWin(int value) {
+        return (value & WIN) != 0;
+    }
+
+    /** Return the number of plies to the end of the game with best play
+     *  in a position having value VALUE, found by probe. */
+    static int distance(int value) {
+        return value & DISTANCE_MASK;
+    }
+
+    /** Return the index of the position on board B: the least index of
+     *  its images under symmetries. */
+    static int index(Board b) {
+        Symmetry symmetry = Symmetry.forSize(b.size());
+        int least = Integer.MAX_VALUE;
+        for (int t = 0; t < Symmetry.COUNT; t += 1) {
+            least = Math.min(least, index(b, symmetry, t));
+        }
+        return least;
+    }
+
+    /** Return the index of the image of the position on board B under
+     *  symmetry #T of SYMMETRY. */
+    private static int index(Board b, Symmetry symmetry, int t) {
+        int index = 0;
+        for (int n = b.size() * b.size() - 1; n >= 0; n -= 1) {
+            int neighbors = b.neighbors(n);
+            Square sq = b.get(symmetry.preimage(t, n));
+            int digit;
+            switch (sq.getSide()) {
+            case RED:
+                digit = sq.getSpots();
+                break;
+            case BLUE:
+                digit = neighbors + sq.getSpots();
+                break;
+            default:
+                digit = 0;
+                break;
+            }
+            index = index * (2 * neighbors + 1) + digit;
+        }
+        return index;
+    }
+
+    /** Solve all positions reachable on a SIZE x SIZE board, and write
+     *  them as a tablebase to FILE. */
+    static void generate(int size, File file) throws IOException {
+        if (size < 2 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("unsupported board size");
+        }
+        HashMap<Integer, Byte> values = new HashMap<Integer, Byte>();
+        solve(new MutableBoard(size), values);
+        int[] indices = new int[values.size()];
+        int k = 0;
+        for (int index : values.keySet()) {
+            indices[k] = index;
+            k += 1;
+        }
+        Arrays.sort(indices);
+        try (DataOutputStream out =
+             new DataOutputStream(new BufferedOutputStream
+                                  (new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(size);
+            out.writeInt(indices.length);
+            for (int index : indices) {
+                out.writeInt(index);
+            }
+            for (int index : indices) {
+                out.writeByte(values.get(index));
+            }
+        }
+    }
+
+    /** Return the value of the position on board B (which must be
+     *  mutable, and whose game is not over) for the player to move,
+     *  recording it and the values of all positions reachable from it
+     *  in VALUES, indexed by position index.  Only moves that
+     *  generateMoves keeps for B are tried: the others lead to images
+     *  of the same positions.  The contents of B are invariant over
+     *  this call. */
+    private static byte solve(Board b, HashMap<Integer, Byte> values) {
+        int index = index(b);
+        Byte known = values.get(index);
+        if (known != null) {
+            return known;
+        }
+        Side player = b.whoseMove();
+        int[] moves = new int[b.size() * b.size()];
+        int numMoves = SearchWorker.generateMoves(player, b, moves);
+        int win = Integer.MAX_VALUE, loss = 0;
+        for (int k = 0; k < numMoves; k += 1) {
+            b.addSpot(player, moves[k]);
+            if (b.getWinner() != null) {
+                win = 1;
+            } else {
+                byte value = solve(b, values);
+                if (isWin(value)) {
+                    loss = Math.max(loss, distance(value) + 1);
+                } else {
+                    win = Math.min(win, distance(value) + 1);
+                }
+            }
+            b.undo();
+        }
+        byte value = (byte) (win != Integer.MAX_VALUE ? WIN | win : loss);
+        values.put(index, value);
+        return value;
+    }
+
+    /** Write the tablebase for boards of size ARGS[0] to the file named
+     *  ARGS[1]. */
+    public static void main(String... args) {
+        if (args.length != 2) {
+            System.err.println("Usage: java jump61.Tablebase SIZE FILE");
+            System.exit(1);
+        }
+        try {
+            File file = new File(args[1]);
+            generate(Integer.parseInt(args[0]), file);
+            System.out.printf("%s: %d positions%n", file,
+                              new Tablebase(file).count());
+        } catch (IOException | IllegalArgumentException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Bit set in the values of positions won by the player to move. */
+    private static final int WIN = 0x80;
+    /** Mask for the distance to the end of the game in a value. */
+    private static final int DISTANCE_MASK = 0x7f;
+    /** Mask selecting a value from a byte. */
+    private static final int BYTE_MASK = 0xff;
+    /** A number greater than any distance, used to rank moves. */
+    private static final int LARGE = 1 << 8;
+
+    /** Position of the board size in the file. */
+    private static final int SIZE_OFFSET = 4;
+    /** Position of the number of positions in the file. */
+    private static final int COUNT_OFFSET = 8;
+    /** Length of the file header. */
+    private static final int HEADER_BYTES = 12;
+
+    /** The contents of my file. */
+    private final MappedByteBuffer _data;
+    /** Size of the boards I cover. */
+    private final int _size;
+    /** Number of positions in the table. */
+    private final int _count;
+    /** Position of the first value in _data. */
+    private final int _values;
+}
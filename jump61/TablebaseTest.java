@@ -0,0 +1,64 @@
+package jump61;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Unit tests of Tablebases.
+ *  @author Dasheng Chen
+ */
+public class TablebaseTest {
+
+    /** Return a newly generated tablebase for SIZE x SIZE boards. */
+    private static Tablebase generate(int size) throws IOException {
+        File file = File.createTempFile("jump61-", ".tb");
+        file.deleteOnExit();
+        Tablebase.generate(size, file);
+        return new Tablebase(file);
+    }
+
+    @Test
+    public void testProbe() throws IOException {
+        Tablebase tablebase = generate(2);
+        assertEquals(2, tablebase.size());
+        Board b = new MutableBoard(2);
+        int value = tablebase.probe(b);
+        assertTrue(value != Tablebase.MISSING);
+        assertEquals(Tablebase.MISSING, tablebase.probe(new MutableBoard(3)));
+        b.set(0, 2, Side.RED);
+        b.set(1, 2, Side.RED);
+        b.set(2, 2, Side.RED);
+        b.set(3, 2, Side.RED);
+        assertEquals(Tablebase.MISSING, tablebase.probe(b));
+    }
+
+    @Test
+    public void testPerfectPlay() throws IOException {
+        Tablebase tablebase = generate(2);
+        Board b = new MutableBoard(2);
+        int value = tablebase.probe(b);
+        Side first = b.whoseMove();
+        int plies = 0;
+        while (b.getWinner() == null) {
+            b.addSpot(b.whoseMove(), tablebase.bestMove(b));
+            plies += 1;
+        }
+        assertEquals(Tablebase.distance(value), plies);
+        assertEquals(Tablebase.isWin(value), b.getWinner() == first);
+    }
+
+    @Test
+    public void testNotTablebase() throws IOException {
+        File file = File.createTempFile("jump61-", ".tb");
+        file.deleteOnExit();
+        try {
+            new Tablebase(file);
+            fail("empty file accepted as a tablebase");
+        } catch (IOException excp) {
+            /* Expected. */
+        }
+    }
+
+}
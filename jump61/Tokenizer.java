@@ -0,0 +1,328 @@
+package jump61;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/** Splits the commands a Game reads into tokens.  This does the work
+ *  of a java.util.Scanner whose delimiter is the pattern
+ *
+ *      \p{Blank}*(?=[\r\n])|(?<=\n)|\p{Blank}+
+ *
+ *  and reproduces its tokens exactly: words are separated by blanks
+ *  (spaces and tabs); each newline is a token of its own, and blanks
+ *  before one are dropped; and (a quirk of the empty delimiter after a
+ *  newline) blanks at the start of a line other than the first belong
+ *  to the following token.  Integers are as Scanner reads them in the
+ *  US locale: an optional sign followed by digits, possibly grouped in
+ *  threes by commas.  Unlike a Scanner, a Tokenizer scans its input by
+ *  hand, without regular expressions, and creates no objects for
+ *  numbers or blanks, so that reading commands costs little next to
+ *  carrying them out.  It reads no further ahead in its input than is
+ *  needed to find the end of the next token.
+ *  @author Dasheng Chen
+ */
+class Tokenizer {
+
+    /** A Tokenizer reading from INPUT. */
+    Tokenizer(Reader input) {
+        _input = input;
+        _buf = new char[BUFFER_SIZE];
+    }
+
+    /** Return true iff there is another token. */
+    boolean hasNext() {
+        return findToken();
+    }
+
+    /** Return true iff there is another token and it matches PATTERN. */
+    boolean hasNext(Pattern pattern) {
+        return findToken() && pattern.matcher(token()).matches();
+    }
+
+    /** Return true iff the next token is an int. */
+    boolean hasNextInt() {
+        return findToken() && parseInteger(Integer.MIN_VALUE,
+                                           Integer.MAX_VALUE);
+    }
+
+    /** Return and consume the next token.  Throws NoSuchElementException
+     *  if there is none. */
+    String next() {
+        if (!findToken()) {
+            throw new NoSuchElementException();
+        }
+        String result = token();
+        consumeToken();
+        return result;
+    }
+
+    /** Return and consume the next token if it matches PATTERN.  Throws
+     *  InputMismatchException (consuming nothing) if it does not, and
+     *  NoSuchElementException if there is no token. */
+    String next(Pattern pattern) {
+        if (!findToken()) {
+            throw new NoSuchElementException();
+        }
+        String result = token();
+        if (!pattern.matcher(result).matches()) {
+            throw new InputMismatchException(result);
+        }
+        consumeToken();
+        return result;
+    }
+
+    /** Return and consume the next token as an int.  Throws
+     *  InputMismatchException (consuming nothing) if it is not one, and
+     *  NoSuchElementException if there is no token. */
+    int nextInt() {
+        return (int) nextInteger(Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    /** Return and consume the next token as a long.  Throws as for
+     *  nextInt. */
+    long nextLong() {
+        return nextInteger(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /** Return the rest of the current line, and consume it and the line
+     *  separator (if any) that ends it.  Throws NoSuchElementException
+     *  if the input is exhausted. */
+    String nextLine() {
+        _tokenStart = -1;
+        int k;
+        for (k = 0; available(k) && !isLineEnd(charAt(k)); k += 1) {
+            continue;
+        }
+        if (k == 0 && !available(0)) {
+            throw new NoSuchElementException("No line found");
+        }
+        String result = k == 0 ? "" : new String(_buf, _pos, k);
+        if (available(k)) {
+            if (charAt(k) == '\r' && available(k + 1)
+                && charAt(k + 1) == '\n') {
+                k += 1;
+            }
+            k += 1;
+        }
+        consume(k);
+        return result;
+    }
+
+    /** Consume the next token as an integer in the range MIN .. MAX and
+     *  return its value.  Throws as for nextInt. */
+    private long nextInteger(long min, long max) {
+        if (!findToken()) {
+            throw new NoSuchElementException();
+        }
+        if (!parseInteger(min, max)) {
+            throw new InputMismatchException(token());
+        }
+        consumeToken();
+        return _value;
+    }
+
+    /** Return true iff the next token (which has been located) is an
+     *  integer in the range MIN .. MAX, setting _value to it if so. */
+    private boolean parseInteger(long min, long max) {
+        int k = _tokenStart, end = _tokenEnd;
+        boolean negative = charAt(k) == '-';
+        if (negative || charAt(k) == '+') {
+            k += 1;
+        }
+        if (k == end || !isNumeral(k, end)) {
+            return false;
+        }
+        long limit = negative ? min : -max;
+        long multiplierLimit = limit / RADIX;
+        long value = 0;
+        for (; k < end; k += 1) {
+            if (charAt(k) == ',') {
+                continue;
+            }
+            int digit = Character.digit(charAt(k), RADIX);
+            if (value < multiplierLimit) {
+                return false;
+            }
+            value *= RADIX;
+            if (value < limit + digit) {
+                return false;
+            }
+            value -= digit;
+        }
+        _value = negative ? value : -value;
+        return true;
+    }
+
+    /** Return true iff the characters at K .. END-1 are a numeral: a
+     *  string of digits, or digits grouped in threes by commas, the first
+     *  group beginning with a non-zero digit. */
+    private boolean isNumeral(int k, int end) {
+        int group = 0;
+        boolean grouped = false;
+        for (int j = k; j < end; j += 1) {
+            char c = charAt(j);
+            if (c == ',') {
+                if (grouped ? group != GROUP : group == 0 || group > GROUP) {
+                    return false;
+                }
+                grouped = true;
+                group = 0;
+            } else if (Character.isDigit(c)) {
+                group += 1;
+            } else {
+                return false;
+            }
+        }
+        return !grouped
+            || group == GROUP && Character.digit(charAt(k), RADIX) != 0;
+    }
+
+    /** Locate the next token, if not already located, setting _tokenStart
+     *  and _tokenEnd to its bounds (relative to the unconsumed input).
+     *  Return false if there is none. */
+    private boolean findToken() {
+        if (_tokenStart >= 0) {
+            return true;
+        }
+        int k = 0;
+        if (!available(k)) {
+            return false;
+        }
+        if (isBlank(charAt(k))) {
+            int e;
+            for (e = k; available(e) && isBlank(charAt(e)); e += 1) {
+                continue;
+            }
+            if (available(e) && isNewline(charAt(e)) || _prev != '\n') {
+                k = e;
+            }
+            if (!available(k)) {
+                return false;
+            }
+        }
+        int end = k + 1;
+        while (charAt(end - 1) != '\n' && available(end)
+               && !isBlank(charAt(end)) && !isNewline(charAt(end))) {
+            end += 1;
+        }
+        _tokenStart = k;
+        _tokenEnd = end;
+        return true;
+    }
+
+    /** Return the token located by findToken. */
+    private String token() {
+        if (_tokenEnd - _tokenStart == 1 && charAt(_tokenStart) == '\n') {
+            return NEWLINE;
+        }
+        return new String(_buf, _pos + _tokenStart, _tokenEnd - _tokenStart);
+    }
+
+    /** Consume input through the end of the token located by
+     *  findToken. */
+    private void consumeToken() {
+        int end = _tokenEnd;
+        _tokenStart = -1;
+        consume(end);
+    }
+
+    /** Consume the next K characters of input (all available). */
+    private void consume(int k) {
+        if (k > 0) {
+            _prev = charAt(k - 1);
+            _pos += k;
+        }
+    }
+
+    /** Return character #K of the unconsumed input (which must be
+     *  available). */
+    private char charAt(int k) {
+        return _buf[_pos + k];
+    }
+
+    /** Return true iff character #K of the unconsumed input has been or
+     *  can be read, reading more input if needed. */
+    private boolean available(int k) {
+        while (_pos + k >= _limit) {
+            if (_eof || !fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Read more input into _buf, first moving the unconsumed part to
+     *  the front or enlarging _buf if needed.  Return false at the end
+     *  of the input. */
+    private boolean fill() {
+        if (_limit == _buf.length) {
+            if (_pos == 0) {
+                _buf = Arrays.copyOf(_buf, 2 * _buf.length);
+            } else {
+                System.arraycopy(_buf, _pos, _buf, 0, _limit - _pos);
+                _limit -= _pos;
+                _pos = 0;
+            }
+        }
+        try {
+            int n = _input.read(_buf, _limit, _buf.length - _limit);
+            if (n < 0) {
+                _eof = true;
+                return false;
+            }
+            _limit += n;
+            return true;
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+    }
+
+    /** Return true iff C is a blank (a space or tab). */
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    /** Return true iff C is a carriage return or newline. */
+    private static boolean isNewline(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /** Return true iff C ends a line, as for Scanner.nextLine. */
+    private static boolean isLineEnd(char c) {
+        return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029'
+            || c == '\u0085';
+    }
+
+    /** The token consisting of a newline. */
+    private static final String NEWLINE = "\n";
+    /** Initial size of _buf. */
+    private static final int BUFFER_SIZE = 8192;
+    /** Radix of integers. */
+    private static final int RADIX = 10;
+    /** Number of digits in a group of a grouped numeral. */
+    private static final int GROUP = 3;
+
+    /** Source of my characters. */
+    private final Reader _input;
+    /** Characters read from _input; those from _pos to _limit have not
+     *  been consumed. */
+    private char[] _buf;
+    /** Position of the first unconsumed character in _buf. */
+    private int _pos;
+    /** End of the characters read into _buf. */
+    private int _limit;
+    /** The last character consumed, or 0 if none. */
+    private char _prev;
+    /** True once _input is exhausted. */
+    private boolean _eof;
+    /** Bounds of the next token, once located, relative to _pos;
+     *  _tokenStart is -1 if it has not been. */
+    private int _tokenStart = -1, _tokenEnd;
+    /** The value of the last integer parsed. */
+    private long _value;
+}
@@ -0,0 +1,203 @@
+package jump61;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Unit tests of Tokenizers.
+ *  @author Dasheng Chen
+ */
+public class TokenizerTest {
+
+    /** Return all the tokens of TEXT. */
+    private static List<String> tokens(String text) {
+        Tokenizer inp = new Tokenizer(new StringReader(text));
+        List<String> result = new ArrayList<String>();
+        while (inp.hasNext()) {
+            result.add(inp.next());
+        }
+        return result;
+    }
+
+    @Test
+    public void testTokens() {
+        assertEquals(Arrays.asList("a", "b", "\n"), tokens("a b\n"));
+        assertEquals(Arrays.asList("a", "\n"), tokens("  a\t \n"));
+        assertEquals(Arrays.asList("\n", "\n"), tokens("\n\n"));
+        assertEquals(Arrays.asList("a", "\r", "\n", " b"),
+                     tokens("a \t\r\n b"));
+        assertEquals(Arrays.asList("a", "\n", " ", "b", "\n"),
+                     tokens("a\n  b\n"));
+        assertEquals(Arrays.asList("a", "\rb", "\n"), tokens("a\rb\n"));
+        assertEquals(Arrays.asList("x", "\n", "\n"), tokens("x  \n  \n"));
+        assertEquals(Arrays.asList(), tokens(" \t "));
+    }
+
+    @Test
+    public void testIntegers() {
+        Tokenizer inp =
+            new Tokenizer(new StringReader("+5 -3 1,000 2,00 x 99999999999"
+                                           + " -2147483648\n"));
+        assertEquals(5, inp.nextInt());
+        assertEquals(-3, inp.nextInt());
+        assertTrue(inp.hasNextInt());
+        assertEquals(1000, inp.nextInt());
+        assertFalse(inp.hasNextInt());
+        assertEquals("2,00", inp.next());
+        try {
+            inp.nextInt();
+            fail("expected InputMismatchException");
+        } catch (InputMismatchException excp) {
+            assertEquals("x", inp.next());
+        }
+        assertFalse(inp.hasNextInt());
+        assertEquals(99999999999L, inp.nextLong());
+        assertEquals(Integer.MIN_VALUE, inp.nextInt());
+        assertEquals("\n", inp.next());
+        assertFalse(inp.hasNext());
+    }
+
+    @Test
+    public void testNextLine() {
+        Tokenizer inp =
+            new Tokenizer(new StringReader("3 x  y\r\nred blue\nquit"));
+        assertEquals(3, inp.nextInt());
+        assertFalse(inp.hasNextInt());
+        assertEquals(" x  y", inp.nextLine());
+        Pattern red = Pattern.compile("[rR][eE][dD]");
+        assertTrue(inp.hasNext(red));
+        assertEquals("red", inp.next(red));
+        assertFalse(inp.hasNext(red));
+        assertEquals(" blue", inp.nextLine());
+        assertEquals("quit", inp.next());
+        try {
+            inp.nextLine();
+            fail("expected NoSuchElementException");
+        } catch (NoSuchElementException excp) {
+            assertFalse(inp.hasNext());
+        }
+    }
+
+    @Test
+    public void testBatch() {
+        String script = "size 3\nauto red\n  set 1 1 2 r\nstart\n1 1\n"
+            + "dump\nbogus\nnew\n2 2\nquit\n";
+        String[] interactive = play(new StringReader(script), false),
+            batch = play(new StringReader(script), true);
+        assertEquals(interactive[0], batch[0]);
+        assertEquals(interactive[1], batch[1]);
+        assertTrue(batch[0].contains("Blue wins."));
+        assertTrue(batch[1].contains("bad command: 'bogus'"));
+    }
+
+    /** Check that each of the scripts in the testing directory, if it
+     *  can be found, produces the same output (prompts aside), the same
+     *  error output, and the same exception, if any, in both modes. */
+    @Test
+    public void testBatchScripts() throws IOException {
+        File dir = null;
+        for (String name : TESTING_DIRS) {
+            if (new File(name).isDirectory()) {
+                dir = new File(name);
+                break;
+            }
+        }
+        if (dir == null) {
+            return;
+        }
+        File[] scripts = dir.listFiles();
+        Arrays.sort(scripts);
+        for (File script : scripts) {
+            if (!script.getName().endsWith(".in")) {
+                continue;
+            }
+            String[] interactive = play(new FileReader(script), false),
+                batch = play(new FileReader(script), true);
+            for (int k = 0; k < interactive.length; k += 1) {
+                assertEquals(script.getName(), interactive[k], batch[k]);
+            }
+        }
+    }
+
+    /** Check that commands and moves that look like printf formats are
+     *  reported as errors, not taken as formats. */
+    @Test
+    public void testFormatsInInput() {
+        for (boolean batch : new boolean[] { false, true }) {
+            String[] result =
+                play(new StringReader("size 2\n%eb\n%s %d\nquit\n"),
+                     batch);
+            assertEquals("", result[2]);
+            assertTrue(result[1].contains("bad command: '%eb'"));
+        }
+    }
+
+    /** Check that a session ending with an exception leaves its error
+     *  output open, with everything written to it flushed, so that the
+     *  exception can still be reported there. */
+    @Test
+    public void testErrorOutputOpenAfterException() throws IOException {
+        Reader input = new Reader() {
+            @Override
+            public int read(char[] buffer, int off, int len) {
+                throw new IllegalStateException("broken input");
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        StringWriter errors = new StringWriter();
+        BufferedWriter errorOutput = new BufferedWriter(errors);
+        Game game = new Game(input, new StringWriter(), new StringWriter(),
+                             errorOutput, true);
+        try {
+            game.play();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException excp) {
+            errorOutput.write("still open");
+            errorOutput.flush();
+        }
+        assertTrue(errors.toString().endsWith("still open"));
+    }
+
+    /** Return the output and error output of a session reading INPUT,
+     *  as a script iff BATCH, and the name of the exception with which
+     *  it ended, if any.  As in Main, the output streams are buffered,
+     *  so that output is lost unless the session flushes them. */
+    private static String[] play(Reader input, boolean batch) {
+        StringWriter output = new StringWriter(), errors = new StringWriter();
+        Game game = new Game(input, new StringWriter(),
+                             new BufferedWriter(output),
+                             new BufferedWriter(errors), batch);
+        String exception = "";
+        try {
+            game.play();
+        } catch (RuntimeException excp) {
+            exception = excp.getClass().getName();
+        }
+        return new String[] {
+            output.toString(), errors.toString(), exception
+        };
+    }
+
+    /** Places to look for the directory of test scripts, relative to
+     *  the directories from which the unit tests are usually run. */
+    private static final String[] TESTING_DIRS = {
+        "../testing", "testing"
+    };
+
+}
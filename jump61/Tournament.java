@@ -0,0 +1,585 @@
+package jump61;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import ucb.util.CommandArgs;
+
+/** A headless tournament between automated players: many games played
+ *  concurrently on a pool of threads, one game to a task.  Each game is
+ *  a separate session (see Game), driven by a script of commands as if
+ *  typed by a user, and shares nothing with the others.  The tournament
+ *  reports the players' win rates, their average time per move, and
+ *  the rate at which games were played, and can write a record of each
+ *  game to a file.
+ *  @author Dasheng Chen
+ */
+public class Tournament {
+
+    /** Options accepted by main. */
+    static final String OPTIONS =
+        "--games=(\\d+){0,1} --threads=(\\d+){0,1} --size=(\\d+){0,} "
+        + "--red=(minimax|mcts){0,1} --blue=(minimax|mcts){0,1} "
+        + "--swap{0,1} --seed=(-?\\d+){0,1} --openings=(\\d+){0,1} "
+        + "--time=(\\d+){0,1} --playouts=(\\d+){0,1} --table=(\\d+){0,1} "
+        + "--records=(.+){0,1} --binary=(.+){0,1}";
+
+    /** Usage message for main. */
+    private static final String USAGE =
+        "Usage: java jump61.Tournament [ --games=N ] [ --threads=N ]\n"
+        + "           [ --size=N ]... [ --red=ENGINE ] [ --blue=ENGINE ]"
+        + " [ --swap ]\n"
+        + "           [ --seed=N ] [ --openings=N ] [ --time=MILLIS ]"
+        + " [ --playouts=N ]\n"
+        + "           [ --table=N ] [ --records=FILE ] [ --binary=FILE ]\n"
+        + "  --games:    Number of games (default 100).\n"
+        + "  --threads:  Number of games played at once (default: one per"
+        + " processor).\n"
+        + "  --size:     Board size; games cycle through all sizes given"
+        + " (default 6).\n"
+        + "  --red, --blue: Engines of the first and second players,"
+        + " 'minimax' or\n"
+        + "              'mcts' (default minimax).\n"
+        + "  --swap:     The players trade colors in every other game.\n"
+        + "  --seed:     Seed from which each game's seed is derived"
+        + " (default 0).\n"
+        + "  --openings: Number of random moves opening each game"
+        + " (default 0).\n"
+        + "  --time, --playouts, --table: As the commands of the same"
+        + " names\n"
+        + "              (defaults 0, 10000, and 16).\n"
+        + "  --records:  File to which to write a line recording each"
+        + " game.\n"
+        + "  --binary:   File to which to append a binary record of each"
+        + " game\n"
+        + "              (see GameRecordWriter).\n";
+
+    /** Default number of games. */
+    private static final int GAMES = 100;
+    /** Default board size. */
+    private static final int SIZE = 6;
+    /** Default engine. */
+    private static final String ENGINE = "minimax";
+    /** Default size of the transposition table of each game (log2 of the
+     *  number of entries), smaller than a session's, since many games
+     *  are in play at once. */
+    private static final int TABLE_LOG_SIZE = 16;
+
+    /** Run a tournament as directed by the options in ARGS0 (see
+     *  USAGE). */
+    public static void main(String... args0) {
+        CommandArgs args = new CommandArgs(OPTIONS, args0);
+        if (!args.ok()) {
+            System.err.print(USAGE);
+            System.exit(1);
+        }
+        try {
+            Tournament tournament = new Tournament(args);
+            tournament.run(new PrintWriter(System.out, true));
+        } catch (NumberFormatException excp) {
+            System.err.printf("Error: bad number: %s%n", excp.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException | IOException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A tournament configured by ARGS (see USAGE). */
+    Tournament(CommandArgs args) {
+        _games = (int) option(args, "--games", GAMES);
+        _threads = (int) option(args, "--threads",
+                                Runtime.getRuntime().availableProcessors());
+        List<String> sizes = args.get("--size");
+        if (sizes.isEmpty()) {
+            _sizes = new int[] { SIZE };
+        } else {
+            _sizes = new int[sizes.size()];
+            for (int k = 0; k < _sizes.length; k += 1) {
+                _sizes[k] = Integer.parseInt(sizes.get(k));
+            }
+        }
+        _engines = new String[] {
+            option(args, "--red", ENGINE), option(args, "--blue", ENGINE)
+        };
+        _swap = args.contains("--swap");
+        _seed = option(args, "--seed", 0);
+        _openings = (int) option(args, "--openings", 0);
+        _time = option(args, "--time", Defaults.MOVE_TIME);
+        _playouts = option(args, "--playouts", Defaults.PLAYOUTS);
+        _tableLogSize = (int) option(args, "--table", TABLE_LOG_SIZE);
+        _records = option(args, "--records", null);
+        _binary = option(args, "--binary", null);
+        if (_games < 1 || _threads < 1) {
+            throw new IllegalArgumentException("need at least one game"
+                                               + " and one thread");
+        }
+        for (int size : _sizes) {
+            if (size < 2 || size > Defaults.MAX_BOARD_SIZE) {
+                throw new IllegalArgumentException("bad board size: "
+                                                   + size);
+            }
+        }
+        if (_tableLogSize > TranspositionTable.MAX_LOG_SIZE) {
+            throw new IllegalArgumentException("table too large");
+        }
+    }
+
+    /** Return the value of option KEY in ARGS, or DEFLT if absent. */
+    private static long option(CommandArgs args, String key, long deflt) {
+        String value = args.getFirst(key);
+        return value == null ? deflt : Long.parseLong(value);
+    }
+
+    /** Return the value of option KEY in ARGS, or DEFLT if absent. */
+    private static String option(CommandArgs args, String key,
+                                 String deflt) {
+        String value = args.getFirst(key);
+        return value == null ? deflt : value;
+    }
+
+    /** Play all my games, writing their records to my records file (if
+     *  any) in order, and print a summary of the results on OUT.  A game
+     *  that fails, even by throwing an exception, is reported on OUT and
+     *  counted as an error, and the others go on. */
+    void run(PrintWriter out) throws IOException {
+        if (_binary != null) {
+            _recorder = GameRecordWriter.open(new File(_binary));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(_threads);
+        long start = System.nanoTime();
+        List<Match> matches = new ArrayList<Match>();
+        List<Future<Match>> futures = new ArrayList<Future<Match>>();
+        for (int k = 0; k < _games; k += 1) {
+            matches.add(new Match(this, k));
+            futures.add(pool.submit(matches.get(k)));
+        }
+        PrintWriter records = null;
+        if (_records != null) {
+            records = new PrintWriter(new BufferedWriter
+                                      (new FileWriter(_records)));
+        }
+        try {
+            for (int k = 0; k < _games; k += 1) {
+                Match match = result(futures.get(k), matches.get(k));
+                tally(match);
+                if (match.error() != null) {
+                    out.printf("Game %d failed: %s%n", k, match.error());
+                }
+                if (records != null) {
+                    records.println(match.record());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            if (records != null) {
+                records.close();
+            }
+            if (_recorder != null) {
+                _recorder.close();
+            }
+        }
+        report(out, System.nanoTime() - start);
+    }
+
+    /** Return MATCH once FUTURE, which plays it, is done, marking it
+     *  as failed if it ended with an exception. */
+    private static Match result(Future<Match> future, Match match) {
+        while (true) {
+            try {
+                return future.get();
+            } catch (InterruptedException excp) {
+                continue;
+            } catch (ExecutionException excp) {
+                match.fail(excp.getCause());
+                return match;
+            }
+        }
+    }
+
+    /** Return a new session, playing the commands in SCRIPT, writing its
+     *  output to OUTPUT and its error output to ERRORS, for one of my
+     *  games. */
+    Game newGame(Reader script, Writer output, Writer errors) {
+        return new Game(script, new StringWriter(), output, errors);
+    }
+
+    /** Add the outcome of MATCH to my totals. */
+    private void tally(Match match) {
+        if (match.error() != null) {
+            _errors += 1;
+            return;
+        }
+        _plies += match.plies();
+        Side winner = match.winner();
+        for (int p = 0; p < 2; p += 1) {
+            Side color = match.color(p);
+            if (winner == color) {
+                _wins[p] += 1;
+                _colorWins[color.ordinal()] += 1;
+            }
+            _moveNanos[p] += match.moveNanos(color);
+            _moves[p] += match.moves(color);
+        }
+    }
+
+    /** Print a summary of my results on OUT, given that they took
+     *  ELAPSED nanoseconds. */
+    private void report(PrintWriter out, long elapsed) {
+        double seconds = elapsed / 1e9;
+        int played = _games - _errors;
+        out.printf("%d games in %.1f s (%.2f games/s) on %d threads%n",
+                   _games, seconds, _games / seconds, _threads);
+        for (int p = 0; p < 2; p += 1) {
+            out.printf("Player %d (%s%s): %d wins (%.1f%%),"
+                       + " %.1f ms per move%n",
+                       p + 1, _engines[p],
+                       _swap ? "" : p == 0 ? ", red" : ", blue",
+                       _wins[p], percent(_wins[p], played),
+                       _moves[p] == 0 ? 0.0
+                       : _moveNanos[p] / 1e6 / _moves[p]);
+        }
+        out.printf("Red won %.1f%%, Blue %.1f%%; %.1f moves per game%n",
+                   percent(_colorWins[Side.RED.ordinal()], played),
+                   percent(_colorWins[Side.BLUE.ordinal()], played),
+                   played == 0 ? 0.0 : (double) _plies / played);
+        if (_errors > 0) {
+            out.printf("%d games failed%n", _errors);
+        }
+        out.flush();
+    }
+
+    /** Return the number of wins of player #P (0 or 1). */
+    int wins(int p) {
+        return _wins[p];
+    }
+
+    /** Return the number of wins by COLOR. */
+    int colorWins(Side color) {
+        return _colorWins[color.ordinal()];
+    }
+
+    /** Return the number of games that failed. */
+    int errors() {
+        return _errors;
+    }
+
+    /** Return the seed of game #NUMBER of a tournament with seed SEED.
+     *  Consecutive seeds given to java.util.Random give nearly the same
+     *  first few numbers (on boards whose area is a power of two, the
+     *  same first opening move in every game), so the tournament seed
+     *  plus NUMBER is scrambled by a 64-bit mixing function first. */
+    static long gameSeed(long seed, int number) {
+        return new SplittableRandom(seed + number).nextLong();
+    }
+
+    /** Return PART as a percentage of WHOLE (0 if WHOLE is 0). */
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0.0 : 100.0 * part / whole;
+    }
+
+    /** One game of the tournament, which plays itself when called. */
+    private static class Match implements Callable<Match> {
+
+        /** Game #NUMBER of TOURNAMENT. */
+        Match(Tournament tournament, int number) {
+            _tournament = tournament;
+            _number = number;
+            _size = tournament._sizes[number % tournament._sizes.length];
+            _seed = gameSeed(tournament._seed, number);
+            _swapped = tournament._swap && number % 2 == 1;
+        }
+
+        @Override
+        public Match call() {
+            StringWriter errors = new StringWriter();
+            Game game = _tournament.newGame(new StringReader(script()),
+                                            _transcript, errors);
+            game.setRecorder(_tournament._recorder);
+            game.play();
+            _winner = game.getBoard().getWinner();
+            if (errors.getBuffer().length() > 0) {
+                _error = errors.toString().trim();
+            } else if (_winner == null) {
+                _error = "game did not finish";
+            }
+            return this;
+        }
+
+        /** Mark this game as failed because of CAUSE. */
+        void fail(Throwable cause) {
+            _error = String.valueOf(cause);
+            _winner = null;
+        }
+
+        /** Return the commands that play this game, opening it with
+         *  random moves. */
+        private String script() {
+            Tournament t = _tournament;
+            StringBuilder script = new StringBuilder();
+            script.append(String.format("size %d%nseed %d%ntable %d%n"
+                                        + "time %d%nplayouts %d%n",
+                                        _size, _seed, t._tableLogSize,
+                                        t._time, t._playouts));
+            script.append("manual red\nmanual blue\nstart\n");
+            Board b = new MutableBoard(_size);
+            Random random = new Random(_seed);
+            for (int k = 0; k < t._openings; k += 1) {
+                int move = randomMove(b, random);
+                if (move == -1) {
+                    break;
+                }
+                b.addSpot(b.whoseMove(), move);
+                _transcript.addOpening(b.row(move), b.col(move));
+                script.append(String.format("%d %d%n", b.row(move),
+                                            b.col(move)));
+            }
+            script.append(String.format("auto red %s%nauto blue %s%n"
+                                        + "start%nquit%n",
+                                        engine(Side.RED),
+                                        engine(Side.BLUE)));
+            return script.toString();
+        }
+
+        /** Return a random legal move, chosen using RANDOM, on board B
+         *  that does not win the game, or -1 if there is none. */
+        private static int randomMove(Board b, Random random) {
+            int area = b.size() * b.size();
+            int start = random.nextInt(area);
+            for (int k = 0; k < area; k += 1) {
+                int n = (start + k) % area;
+                if (b.isLegal(b.whoseMove(), n)) {
+                    b.addSpot(b.whoseMove(), n);
+                    boolean wins = b.getWinner() != null;
+                    b.undo();
+                    if (!wins) {
+                        return n;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /** Return the color played by player #P (0 or 1). */
+        Side color(int p) {
+            return (p == 0) != _swapped ? Side.RED : Side.BLUE;
+        }
+
+        /** Return the engine playing COLOR. */
+        String engine(Side color) {
+            return _tournament._engines[color(0) == color ? 0 : 1];
+        }
+
+        /** Return a description of the failure of this game, or null if
+         *  it was played to the end. */
+        String error() {
+            return _error;
+        }
+
+        /** Return the winner of this game, or null if it failed. */
+        Side winner() {
+            return _winner;
+        }
+
+        /** Return the number of moves made in this game. */
+        int plies() {
+            return _transcript.plies();
+        }
+
+        /** Return the number of automated moves made by COLOR. */
+        int moves(Side color) {
+            return _transcript.moves(color);
+        }
+
+        /** Return the total time taken by the automated moves of COLOR
+         *  (nanoseconds). */
+        long moveNanos(Side color) {
+            return _transcript.moveNanos(color);
+        }
+
+        /** Return a one-line record of this game, as space-separated
+         *  KEY=VALUE fields. */
+        String record() {
+            String result =
+                _error != null ? "error=" + _error.replaceAll("\\s+", "_")
+                : "winner=" + _winner;
+            return String.format("game=%d size=%d red=%s blue=%s seed=%d"
+                                 + " %s plies=%d moves=%s",
+                                 _number, _size, engine(Side.RED),
+                                 engine(Side.BLUE), _seed, result,
+                                 _transcript.plies(), _transcript.moveList());
+        }
+
+        /** The tournament to which I belong. */
+        private final Tournament _tournament;
+        /** My number in the tournament. */
+        private final int _number;
+        /** Size of my board. */
+        private final int _size;
+        /** Seed of my game's random numbers. */
+        private final long _seed;
+        /** True iff player #0 plays blue. */
+        private final boolean _swapped;
+        /** Output of my game. */
+        private final Transcript _transcript = new Transcript();
+        /** Description of my game's failure, or null. */
+        private String _error;
+        /** Winner of my game, as found on its board, or null. */
+        private Side _winner;
+    }
+
+    /** The output of one game, from which it gathers the moves made and
+     *  how long each took. */
+    private static class Transcript extends Writer {
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int k = off; k < off + len; k += 1) {
+                char c = cbuf[k];
+                if (c == '\n') {
+                    endLine(_line.toString().trim());
+                    _line.setLength(0);
+                } else {
+                    _line.append(c);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        /** Record a move to R C made before the automated players took
+         *  over. */
+        void addOpening(int r, int c) {
+            addMove(r, c);
+        }
+
+        /** Return the number of moves made. */
+        int plies() {
+            return _plies;
+        }
+
+        /** Return the number of automated moves made by COLOR. */
+        int moves(Side color) {
+            return _moves[color.ordinal()];
+        }
+
+        /** Return the total time taken by the automated moves of COLOR
+         *  (nanoseconds). */
+        long moveNanos(Side color) {
+            return _nanos[color.ordinal()];
+        }
+
+        /** Return the moves made, as comma-separated ROW:COLUMN
+         *  pairs. */
+        String moveList() {
+            return _moveList.toString();
+        }
+
+        /** Process LINE, a complete line of output. */
+        private void endLine(String line) {
+            long now = System.nanoTime();
+            Matcher move = MOVE.matcher(line);
+            if (line.equals("start game")) {
+                _mark = now;
+            } else if (move.matches()) {
+                Side color = Side.valueOf(move.group(1).toUpperCase());
+                _moves[color.ordinal()] += 1;
+                _nanos[color.ordinal()] += now - _mark;
+                _mark = now;
+                addMove(Integer.parseInt(move.group(2)),
+                        Integer.parseInt(move.group(3)));
+            }
+        }
+
+        /** Record a move to R C. */
+        private void addMove(int r, int c) {
+            if (_plies > 0) {
+                _moveList.append(',');
+            }
+            _moveList.append(r).append(':').append(c);
+            _plies += 1;
+        }
+
+        /** The announcement of an automated move. */
+        private static final Pattern MOVE =
+            Pattern.compile("(Red|Blue) moves (\\d+) (\\d+)\\.");
+
+        /** The current, incomplete line of output. */
+        private final StringBuilder _line = new StringBuilder();
+        /** The moves made so far. */
+        private final StringBuilder _moveList = new StringBuilder();
+        /** Number of moves made so far. */
+        private int _plies;
+        /** Numbers of automated moves, indexed by Side ordinal. */
+        private final int[] _moves = new int[Side.values().length];
+        /** Times taken by automated moves, indexed by Side ordinal. */
+        private final long[] _nanos = new long[Side.values().length];
+        /** Time of the last move or start of play (nanoseconds). */
+        private long _mark;
+    }
+
+    /** Number of games to play. */
+    private final int _games;
+    /** Number of games to play at once. */
+    private final int _threads;
+    /** Board sizes, used in turn. */
+    private final int[] _sizes;
+    /** Engines of players #0 and #1. */
+    private final String[] _engines;
+    /** True iff the players trade colors in every other game. */
+    private final boolean _swap;
+    /** Seed of game #0. */
+    private final long _seed;
+    /** Number of random moves opening each game. */
+    private final int _openings;
+    /** Time budget per move (milliseconds), or 0 for fixed depth. */
+    private final long _time;
+    /** Playout budget per move of Monte Carlo players. */
+    private final long _playouts;
+    /** Size of each game's transposition table (log2 of entries). */
+    private final int _tableLogSize;
+    /** Name of the file of game records, or null for none. */
+    private final String _records;
+    /** Name of the file of binary game records, or null for none. */
+    private final String _binary;
+    /** Writer of binary game records, shared by all games, or null. */
+    private GameRecordWriter _recorder;
+
+    /** Number of games that failed. */
+    private int _errors;
+    /** Total number of moves in games played. */
+    private long _plies;
+    /** Wins of players #0 and #1. */
+    private final int[] _wins = new int[2];
+    /** Wins by each color, indexed by Side ordinal. */
+    private final int[] _colorWins = new int[Side.values().length];
+    /** Total time taken by the automated moves of players #0 and #1
+     *  (nanoseconds). */
+    private final long[] _moveNanos = new long[2];
+    /** Numbers of automated moves of players #0 and #1. */
+    private final int[] _moves = new int[2];
+}
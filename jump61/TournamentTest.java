@@ -0,0 +1,109 @@
+package jump61;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ucb.util.CommandArgs;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Unit tests of Tournaments.
+ *  @author Dasheng Chen
+ */
+public class TournamentTest {
+
+    /** Return a tournament configured by ARGS. */
+    private static Tournament tournament(String... args) {
+        CommandArgs options = new CommandArgs(Tournament.OPTIONS, args);
+        assertTrue(options.ok());
+        return new Tournament(options);
+    }
+
+    @Test
+    public void testTotals() throws IOException {
+        File records = File.createTempFile("jump61", ".txt");
+        records.deleteOnExit();
+        Tournament t = tournament("--games=8", "--threads=2", "--size=4",
+                                  "--size=3", "--swap", "--openings=2",
+                                  "--records=" + records.getPath());
+        StringWriter output = new StringWriter();
+        t.run(new PrintWriter(output));
+        assertEquals(0, t.errors());
+        assertEquals(8, t.wins(0) + t.wins(1));
+        assertEquals(8, t.colorWins(Side.RED) + t.colorWins(Side.BLUE));
+        assertTrue(output.toString().startsWith("8 games in "));
+        List<String> lines = Files.readAllLines(records.toPath());
+        assertEquals(8, lines.size());
+        Set<String> firstMoves = new HashSet<String>();
+        for (int k = 0; k < lines.size(); k += 1) {
+            String line = lines.get(k);
+            assertTrue(line.startsWith("game=" + k + " size="
+                                       + (k % 2 == 0 ? 4 : 3)));
+            assertTrue(line.contains(" winner="));
+            if (k % 2 == 0) {
+                firstMoves.add(line.replaceAll(".* moves=([^,]*),.*",
+                                               "$1"));
+            }
+        }
+        assertTrue(firstMoves.size() > 1);
+    }
+
+    @Test
+    public void testFailedGame() throws IOException {
+        CommandArgs options =
+            new CommandArgs(Tournament.OPTIONS,
+                            new String[] { "--games=6", "--threads=2",
+                                           "--size=3" });
+        final AtomicInteger started = new AtomicInteger();
+        Tournament t = new Tournament(options) {
+            @Override
+            Game newGame(Reader script, Writer output, Writer errors) {
+                if (started.getAndIncrement() != 0) {
+                    return super.newGame(script, output, errors);
+                }
+                return new Game(script, new StringWriter(), output,
+                                errors) {
+                    @Override
+                    int play() {
+                        throw new IllegalStateException("broken game");
+                    }
+                };
+            }
+        };
+        StringWriter output = new StringWriter();
+        t.run(new PrintWriter(output));
+        assertEquals(1, t.errors());
+        assertEquals(5, t.wins(0) + t.wins(1));
+        assertEquals(5, t.colorWins(Side.RED) + t.colorWins(Side.BLUE));
+        assertTrue(output.toString().contains("broken game"));
+        assertTrue(output.toString().contains("6 games in "));
+    }
+
+    @Test
+    public void testGameSeeds() {
+        Set<Integer> firstMoves = new HashSet<Integer>();
+        for (int k = 0; k < GAMES; k += 1) {
+            long seed = Tournament.gameSeed(0, k);
+            assertNotEquals(seed, Tournament.gameSeed(1, k));
+            firstMoves.add(new Random(seed).nextInt(AREA));
+        }
+        assertTrue(firstMoves.size() > AREA / 2);
+    }
+
+    /** Number of game seeds examined by testGameSeeds. */
+    private static final int GAMES = 40;
+    /** Area of a 4x4 board. */
+    private static final int AREA = 16;
+
+}
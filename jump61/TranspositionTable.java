@@ -0,0 +1,152 @@
+package jump61;
+
+/** A fixed-size table of search results, indexed by position key (see
+ *  Board.positionKey).  Each entry records the depth to which a position
+ *  was searched, the resulting score (from the point of view of the
+ *  player to move), whether that score is exact or only a bound, and the
+ *  best move found.  The table has a power-of-two number of entries,
+ *  grouped in pairs: the first entry of a pair keeps the deepest result
+ *  stored there, and the second always receives results the first
+ *  rejects.
+ *
+ *  An entry is two longs: its packed data and its key XORed with the
+ *  data.  A probe checks one against the other, so an entry torn by
+ *  concurrent stores simply fails to match, and the table may be shared
+ *  among searching threads without locking.
+ *  @author Dasheng Chen
+ */
+class TranspositionTable {
+
+    /** Bound type: the score is exact. */
+    static final int EXACT = 0;
+    /** Bound type: the score is a lower bound on the true score. */
+    static final int LOWER = 1;
+    /** Bound type: the score is an upper bound on the true score. */
+    static final int UPPER = 2;
+
+    /** Largest permitted value of the log of the number of entries. */
+    static final int MAX_LOG_SIZE = 28;
+
+    /** A table with 2**LOGSIZE entries.  LOGSIZE of 0 gives a table that
+     *  records nothing. */
+    TranspositionTable(int logSize) {
+        if (logSize < 0 || logSize > MAX_LOG_SIZE) {
+            throw new IllegalArgumentException("bad table size");
+        }
+        int entries = logSize == 0 ? 0 : 1 << logSize;
+        _keys = new long[entries];
+        _data = new long[entries];
+        _mask = Math.max(entries - 1, 0) & ~1;
+        _logSize = logSize;
+    }
+
+    /** Return the log of my number of entries. */
+    int logSize() {
+        return _logSize;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        for (int i = 0; i < _keys.length; i += 1) {
+            _keys[i] = _data[i] = 0;
+        }
+    }
+
+    /** Return the packed data stored for the position with key KEY, or
+     *  MISSING if there is none.  Use the static depth, score, move, and
+     *  bound methods to unpack it. */
+    long probe(long key) {
+        if (_keys.length == 0) {
+            return MISSING;
+        }
+        int i = (int) key & _mask;
+        long data = _data[i];
+        if ((_keys[i] ^ data) == key && data != MISSING) {
+            return data;
+        }
+        data = _data[i + 1];
+        if ((_keys[i + 1] ^ data) == key && data != MISSING) {
+            return data;
+        }
+        return MISSING;
+    }
+
+    /** Record that searching the position with key KEY to depth DEPTH
+     *  gave SCORE, which is of type BOUND (EXACT, LOWER, or UPPER), and
+     *  that the best move found was square #MOVE (-1 if none). */
+    void store(long key, int depth, int score, int bound, int move) {
+        if (_keys.length == 0) {
+            return;
+        }
+        long data = pack(depth, score, bound, move);
+        int i = (int) key & _mask;
+        long old = _data[i];
+        if (old == MISSING || (_keys[i] ^ old) == key
+            || depth >= depth(old)) {
+            _data[i] = data;
+            _keys[i] = key ^ data;
+        } else {
+            _data[i + 1] = data;
+            _keys[i + 1] = key ^ data;
+        }
+    }
+
+    /** Return the depth recorded in packed entry DATA. */
+    static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & DEPTH_MASK;
+    }
+
+    /** Return the score recorded in packed entry DATA. */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /** Return the bound type recorded in packed entry DATA. */
+    static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & BOUND_MASK;
+    }
+
+    /** Return the move recorded in packed entry DATA, or -1 if none. */
+    static int move(long data) {
+        return ((int) (data >>> MOVE_SHIFT) & MOVE_MASK) - 1;
+    }
+
+    /** Return the packed form of an entry for DEPTH, SCORE, BOUND, and
+     *  MOVE. */
+    private static long pack(int depth, int score, int bound, int move) {
+        return (score & SCORE_MASK)
+            | ((long) (move + 1) & MOVE_MASK) << MOVE_SHIFT
+            | ((long) Math.min(depth, DEPTH_MASK)) << DEPTH_SHIFT
+            | ((long) bound) << BOUND_SHIFT
+            | PRESENT;
+    }
+
+    /** Value returned by probe for positions not in the table. */
+    static final long MISSING = 0;
+
+    /** Mask for the score in a packed entry. */
+    private static final long SCORE_MASK = 0xffffffffL;
+    /** Position of the move (plus 1) in a packed entry. */
+    private static final int MOVE_SHIFT = 32;
+    /** Mask for the move (plus 1), once shifted down. */
+    private static final int MOVE_MASK = 0xffff;
+    /** Position of the depth in a packed entry. */
+    private static final int DEPTH_SHIFT = 48;
+    /** Mask for the depth, once shifted down. */
+    private static final int DEPTH_MASK = 0xff;
+    /** Position of the bound type in a packed entry. */
+    private static final int BOUND_SHIFT = 56;
+    /** Mask for the bound type, once shifted down. */
+    private static final int BOUND_MASK = 0x3;
+    /** Bit set in every stored entry, distinguishing it from MISSING. */
+    private static final long PRESENT = 1L << 62;
+
+    /** Keys of entries, each XORed with the entry's data. */
+    private final long[] _keys;
+    /** Packed data of entries. */
+    private final long[] _data;
+    /** Mask selecting the first entry of a pair from a key. */
+    private final int _mask;
+    /** Log of the number of entries. */
+    private final int _logSize;
+}
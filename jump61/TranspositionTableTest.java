@@ -0,0 +1,54 @@
+package jump61;
+
+import static jump61.TranspositionTable.*;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Unit tests of TranspositionTables.
+ *  @author Dasheng Chen
+ */
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(8);
+        assertEquals(MISSING, table.probe(12345L));
+        table.store(12345L, 3, -17, LOWER, 42);
+        long entry = table.probe(12345L);
+        assertNotEquals(MISSING, entry);
+        assertEquals(3, depth(entry));
+        assertEquals(-17, score(entry));
+        assertEquals(LOWER, bound(entry));
+        assertEquals(42, move(entry));
+        table.store(99L, 0, 5, EXACT, -1);
+        assertEquals(-1, move(table.probe(99L)));
+        assertEquals(MISSING, table.probe(12345L + (1L << 40)));
+    }
+
+    @Test
+    public void testReplacement() {
+        TranspositionTable table = new TranspositionTable(4);
+        long deep = 0x100L, shallow = 0x200L, other = 0x300L;
+        table.store(deep, 6, 1, EXACT, 1);
+        table.store(shallow, 2, 2, EXACT, 2);
+        assertEquals(6, depth(table.probe(deep)));
+        assertEquals(2, depth(table.probe(shallow)));
+        table.store(other, 1, 3, EXACT, 3);
+        assertEquals(6, depth(table.probe(deep)));
+        assertEquals(MISSING, table.probe(shallow));
+        assertEquals(3, move(table.probe(other)));
+        table.store(deep, 2, 4, UPPER, 4);
+        assertEquals(UPPER, bound(table.probe(deep)));
+        table.clear();
+        assertEquals(MISSING, table.probe(deep));
+    }
+
+    @Test
+    public void testEmpty() {
+        TranspositionTable table = new TranspositionTable(0);
+        table.store(7L, 1, 1, EXACT, 1);
+        assertEquals(MISSING, table.probe(7L));
+    }
+
+}
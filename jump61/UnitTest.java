@@ -9,7 +9,16 @@ public class UnitTest {
 
     /** Run the JUnit tests in the tex61 package. */
     public static void main(String[] ignored) {
-        textui.runClasses(jump61.BoardTest.class);
+        textui.runClasses(jump61.BoardTest.class,
+                          jump61.TranspositionTableTest.class,
+                          jump61.AITest.class,
+                          jump61.MCTSPlayerTest.class,
+                          jump61.TablebaseTest.class,
+                          jump61.TokenizerTest.class,
+                          jump61.TournamentTest.class,
+                          jump61.ServerTest.class,
+                          jump61.SearchSchedulerTest.class,
+                          jump61.GameRecordTest.class);
     }
 
 }
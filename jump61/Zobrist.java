@@ -0,0 +1,94 @@
+package jump61;
+
+import java.util.Random;
+
+/** Zobrist keys for Jump61 positions.  Each possible (square number,
+ *  color) and (square number, number of spots) pair is assigned a fixed
+ *  pseudo-random 64-bit value; the key of a position is the exclusive
+ *  or of the values for the contents of each of its squares, together
+ *  with a value for the size of the board.  Because exclusive or is its
+ *  own inverse, a Board can keep its key up to date as individual
+ *  squares change.  The values are generated from a fixed seed, so keys
+ *  are the same from run to run.
+ *  @author Dasheng Chen
+ */
+class Zobrist {
+
+    /** Not instantiable. */
+    private Zobrist() {
+    }
+
+    /** Return the contribution to a position key of square #SQ when it
+     *  has color number SIDE (a Side ordinal) and SPOTS spots. */
+    static long square(int sq, int side, int spots) {
+        return SIDE_KEYS[sq * NUM_SIDES + side]
+            ^ SPOT_KEYS[sq * SPOT_LIMIT + spots];
+    }
+
+    /** Return the contribution to a position key of square #SQ when its
+     *  contents are SQUARE. */
+    static long square(int sq, Square square) {
+        return square(sq, square.getSide().ordinal(), square.getSpots());
+    }
+
+    /** Return the contribution to a position key of the board having
+     *  size N. */
+    static long size(int N) {
+        return SIZE_KEYS[N];
+    }
+
+    /** Return the key of the position on BOARD, computed from scratch. */
+    static long key(Board board) {
+        long key = size(board.size());
+        int n = board.size() * board.size();
+        for (int i = 0; i < n; i += 1) {
+            key ^= square(i, board.get(i));
+        }
+        return key;
+    }
+
+    /** Return the key of the image under symmetry #T of SYMMETRY (whose
+     *  boards have the size of BOARD) of the position on BOARD, computed
+     *  from scratch. */
+    static long key(Board board, Symmetry symmetry, int t) {
+        long key = size(board.size());
+        int n = board.size() * board.size();
+        for (int i = 0; i < n; i += 1) {
+            key ^= square(symmetry.image(t, i), board.get(i));
+        }
+        return key;
+    }
+
+    /** Seed for the generator of all keys. */
+    private static final long SEED = 0x6a756d7036315aL;
+    /** Number of distinct colors. */
+    private static final int NUM_SIDES = Side.values().length;
+    /** Number of distinct spot counts. */
+    private static final int SPOT_LIMIT = Square.MAX_SPOTS + 1;
+    /** Maximum number of squares on a board. */
+    private static final int MAX_SQUARES =
+        Defaults.MAX_BOARD_SIZE * Defaults.MAX_BOARD_SIZE;
+
+    /** Values for (square, color) pairs, indexed by
+     *  square * NUM_SIDES + color. */
+    private static final long[] SIDE_KEYS = new long[MAX_SQUARES * NUM_SIDES];
+    /** Values for (square, spots) pairs, indexed by
+     *  square * SPOT_LIMIT + spots. */
+    private static final long[] SPOT_KEYS = new long[MAX_SQUARES * SPOT_LIMIT];
+    /** Values for board sizes. */
+    private static final long[] SIZE_KEYS =
+        new long[Defaults.MAX_BOARD_SIZE + 1];
+
+    static {
+        Random random = new Random(SEED);
+        for (int i = 0; i < SIDE_KEYS.length; i += 1) {
+            SIDE_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < SPOT_KEYS.length; i += 1) {
+            SPOT_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < SIZE_KEYS.length; i += 1) {
+            SIZE_KEYS[i] = random.nextLong();
+        }
+    }
+}